@@ -0,0 +1,51 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationCodecBenchmark {
+
+    @Param({"1", "10"})
+    private int experiments;
+
+    private JsonArray allocations;
+    private byte[] encoded;
+
+    /**
+     * Builds and encodes the allocations.
+     */
+    @Setup
+    public void setUp() {
+        allocations = BenchmarkAllocations.create(experiments, 4);
+        encoded = AllocationCodec.encode(allocations);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return AllocationCodec.encode(allocations);
+    }
+
+    @Benchmark
+    public JsonArray decode() {
+        return AllocationCodec.decode(encoded);
+    }
+}
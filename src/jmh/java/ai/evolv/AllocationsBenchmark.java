@@ -0,0 +1,67 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationsBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int experiments;
+
+    @Param({"2", "8"})
+    private int depth;
+
+    private JsonArray allocations;
+    private AllocationSet allocationSet;
+    private AscendAllocationStore store;
+    private AscendParticipant participant;
+    private String key;
+
+    /**
+     * Builds the allocations and the participant.
+     */
+    @Setup
+    public void setUp() {
+        allocations = BenchmarkAllocations.create(experiments, depth);
+        allocationSet = AllocationSet.parse(allocations);
+        store = new DefaultAllocationStore(1000);
+        participant = AscendParticipant.builder()
+                .setUserId("benchmark_uid")
+                .setSessionId("benchmark_sid")
+                .build();
+        // the last experiment is the worst case for a walk over every genome
+        key = BenchmarkAllocations.key(experiments - 1, depth);
+    }
+
+    @Benchmark
+    public Optional<Integer> getValueFromAllocations() {
+        return new Allocations(allocationSet, store)
+                .lookupValue(key, Integer.class, participant);
+    }
+
+    @Benchmark
+    public Optional<Integer> getValueFromUnallocationSet() {
+        return new Allocations(allocations, store)
+                .lookupValue(key, Integer.class, participant);
+    }
+}
@@ -0,0 +1,79 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudienceBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int rules;
+
+    private final Audience audience = new Audience();
+    private JsonObject allocation;
+    private Audience.Condition audienceQuery;
+    private Map<String, String> userAttributes;
+
+    /**
+     * Builds an audience query with the given number of rules.
+     */
+    @Setup
+    public void setUp() {
+        // every rule matches so the whole tree is evaluated
+        JsonArray ruleArray = new JsonArray();
+        userAttributes = new HashMap<>();
+        for (int i = 0; i < rules; i++) {
+            JsonArray value = new JsonArray();
+            value.add("attribute_" + i);
+            value.add("value_" + i);
+
+            JsonObject rule = new JsonObject();
+            rule.addProperty("field", "user_attributes");
+            rule.addProperty("operator", i % 2 == 0 ? "kv_equal" : "kv_contains");
+            rule.add("value", value);
+            ruleArray.add(rule);
+
+            userAttributes.put("attribute_" + i, "value_" + i);
+        }
+
+        JsonObject query = new JsonObject();
+        query.addProperty("combinator", "and");
+        query.add("rules", ruleArray);
+
+        allocation = new JsonObject();
+        allocation.addProperty("excluded", false);
+        allocation.add("audience_query", query);
+        audienceQuery = Audience.compile(query);
+    }
+
+    @Benchmark
+    public boolean filter() {
+        return audience.filter(userAttributes, allocation);
+    }
+
+    @Benchmark
+    public boolean filterCompiled() {
+        return Audience.filter(userAttributes, false, audienceQuery);
+    }
+}
@@ -0,0 +1,56 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Builds synthetic allocations for the benchmarks.
+ */
+final class BenchmarkAllocations {
+
+    private BenchmarkAllocations() {
+    }
+
+    /**
+     * Creates one allocation per experiment, experiment i holds a single value
+     * under {@link #key(int, int)}.
+     * @param experiments the number of allocations
+     * @param depth the number of genome levels above each value
+     * @return the allocations
+     */
+    static JsonArray create(int experiments, int depth) {
+        JsonArray allocations = new JsonArray();
+        for (int i = 0; i < experiments; i++) {
+            JsonObject leaf = new JsonObject();
+            leaf.addProperty("value", i);
+            JsonObject node = leaf;
+            for (int level = depth - 1; level > 0; level--) {
+                JsonObject parent = new JsonObject();
+                parent.add("level_" + level, node);
+                parent.addProperty("sibling_" + level, "sibling");
+                node = parent;
+            }
+
+            JsonObject genome = new JsonObject();
+            genome.add("experiment_" + i, node);
+
+            JsonObject allocation = new JsonObject();
+            allocation.addProperty("uid", "benchmark_uid");
+            allocation.addProperty("sid", "benchmark_sid");
+            allocation.addProperty("eid", "eid_" + i);
+            allocation.addProperty("cid", "cid_" + i);
+            allocation.add("genome", genome);
+            allocation.addProperty("excluded", false);
+            allocations.add(allocation);
+        }
+        return allocations;
+    }
+
+    static String key(int experiment, int depth) {
+        StringBuilder key = new StringBuilder("experiment_").append(experiment);
+        for (int level = 1; level < depth; level++) {
+            key.append(".level_").append(level);
+        }
+        return key.append(".value").toString();
+    }
+}
@@ -0,0 +1,72 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Retrieves a value through a client whose allocations have been fetched.
+ * <p>
+ *     Every other experiment excludes the participant, so a retrieval skips
+ *     filtered allocations before it finds its value. Debug logging is
+ *     disabled, the benchmarks only have the SLF4J API on their classpath.
+ *     Run it with the GC profiler to see the bytes allocated per retrieval:
+ *     ./gradlew jmh -PjmhArgs="ClientGetBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientGetBenchmark {
+
+    @Param({"2", "20"})
+    private int experiments;
+
+    private AscendClient client;
+    private String key;
+
+    /**
+     * Initializes the client and waits for its allocations.
+     */
+    @Setup
+    public void setUp() {
+        JsonArray allocations = BenchmarkAllocations.create(experiments, 2);
+        for (int i = 0; i < experiments; i += 2) {
+            allocations.get(i).getAsJsonObject().addProperty("excluded", true);
+        }
+        AscendConfig config = AscendConfig.builder("benchmark_environment",
+                new StubHttpClient(allocations.toString())).build();
+        AscendParticipant participant = AscendParticipant.builder()
+                .setUserId("benchmark_uid")
+                .setSessionId("benchmark_sid")
+                .build();
+        client = AscendClientFactory.init(config, participant);
+        key = BenchmarkAllocations.key(experiments - 1, 2);
+        client.get(key, 0);
+    }
+
+    @Benchmark
+    public Integer get() {
+        return client.get(key, 0);
+    }
+
+    @Benchmark
+    public Integer getMissingKey() {
+        return client.get("benchmark.missing", 0);
+    }
+}
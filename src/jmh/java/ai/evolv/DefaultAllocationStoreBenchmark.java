@@ -0,0 +1,61 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class DefaultAllocationStoreBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private AscendAllocationStore store;
+    private String[] uids;
+    private JsonArray allocations;
+
+    /**
+     * Fills the store with allocations.
+     */
+    @Setup
+    public void setUp() {
+        store = new DefaultAllocationStore(size);
+        allocations = BenchmarkAllocations.create(1, 2);
+        // twice as many participants as entries so puts also evict
+        uids = new String[size * 2];
+        for (int i = 0; i < uids.length; i++) {
+            uids[i] = "uid_" + i;
+            store.put(uids[i], allocations);
+        }
+    }
+
+    @Benchmark
+    public JsonArray get() {
+        return store.get(uids[ThreadLocalRandom.current().nextInt(uids.length)]);
+    }
+
+    @Benchmark
+    public void put() {
+        store.put(uids[ThreadLocalRandom.current().nextInt(uids.length)], allocations);
+    }
+}
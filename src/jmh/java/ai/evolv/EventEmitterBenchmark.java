@@ -0,0 +1,54 @@
+package ai.evolv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventEmitterBenchmark {
+
+    private EventEmitter emitter;
+
+    /**
+     * Builds an emitter backed by the stub HttpClient.
+     */
+    @Setup
+    public void setUp() {
+        AscendConfig config = AscendConfig.builder("benchmark_environment",
+                new StubHttpClient("")).build();
+        AscendParticipant participant = AscendParticipant.builder()
+                .setUserId("benchmark_uid")
+                .setSessionId("benchmark_sid")
+                .build();
+        emitter = new EventEmitter(config, participant, config.getAscendAllocationStore());
+    }
+
+    @Benchmark
+    public String getEventUrl() {
+        return emitter.getEventUrl("benchmark_event", 1.0);
+    }
+
+    @Benchmark
+    public String getAllocationEventUrl() {
+        return emitter.getEventUrl(EventEmitter.CONFIRM_KEY, "benchmark_eid", "benchmark_cid");
+    }
+
+    @Benchmark
+    public void emit() {
+        emitter.emit("benchmark_event", 1.0);
+    }
+}
@@ -0,0 +1,51 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconcileAllocationsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int experiments;
+
+    private JsonArray previousAllocations;
+    private JsonArray currentAllocations;
+
+    /**
+     * Builds previous and current allocations that share half of their experiments.
+     */
+    @Setup
+    public void setUp() {
+        previousAllocations = BenchmarkAllocations.create(experiments, 2);
+        // half of the experiments are new, half were allocated before
+        currentAllocations = new JsonArray();
+        JsonArray newAllocations = BenchmarkAllocations.create(experiments * 3 / 2, 2);
+        for (int i = experiments / 2; i < newAllocations.size(); i++) {
+            currentAllocations.add(newAllocations.get(i));
+        }
+    }
+
+    @Benchmark
+    public JsonArray reconcileAllocations() {
+        return Allocations.reconcileAllocations(previousAllocations, currentAllocations);
+    }
+}
@@ -0,0 +1,21 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An HttpClient that answers every request with the same body without touching
+ * the network.
+ */
+final class StubHttpClient implements HttpClient {
+
+    private final CompletableFuture<String> response;
+
+    StubHttpClient(String body) {
+        this.response = CompletableFuture.completedFuture(body);
+    }
+
+    @Override
+    public CompletableFuture<String> get(String url) {
+        return response;
+    }
+}
@@ -0,0 +1,167 @@
+package ai.evolv;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A participant's allocation into a single experiment.
+ * <p>
+ *     The allocation is parsed once from the Participant API's JSON and
+ *     neither it nor the JSON change afterwards. Its touched, confirmed and
+ *     contaminated flags live in the participant's {@link ParticipantFlags}.
+ * </p>
+ */
+final class Allocation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Allocation.class);
+
+    private final JsonObject source;
+    private final String experimentId;
+    private final String candidateId;
+    private final JsonObject genome;
+    private final Audience.Condition audienceQuery;
+    private final boolean excluded;
+    private final ParticipantFlags flags;
+
+    private Allocation(JsonObject source, String experimentId, String candidateId,
+                       JsonObject genome, Audience.Condition audienceQuery, boolean excluded,
+                       ParticipantFlags flags) {
+        this.source = source;
+        this.experimentId = experimentId;
+        this.candidateId = candidateId;
+        this.genome = genome;
+        this.audienceQuery = audienceQuery;
+        this.excluded = excluded;
+        this.flags = flags;
+    }
+
+    /**
+     * Parses an allocation returned by the Participant API or read from an
+     * allocation store.
+     * <p>
+     *     A malformed audience query is logged and filters every participant
+     *     with user attributes.
+     * </p>
+     * @param allocation the allocation's JSON
+     * @return the parsed allocation
+     */
+    static Allocation parse(JsonObject allocation) {
+        return parse(allocation, new ParticipantFlags());
+    }
+
+    /**
+     * Parses an allocation and merges its stored flags into the participant's.
+     * @param allocation the allocation's JSON
+     * @param flags the flags of the participant the allocation belongs to
+     * @return the parsed allocation
+     */
+    static Allocation parse(JsonObject allocation, ParticipantFlags flags) {
+        String experimentId = allocation.get("eid").getAsString();
+
+        Audience.Condition audienceQuery;
+        try {
+            audienceQuery = Audience.compile(allocation.get("audience_query"));
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("The audience query of experiment {} is malformed, participants with "
+                    + "user attributes will be filtered.", experimentId, e);
+            audienceQuery = Audience.NEVER;
+        }
+
+        int storedFlags = 0;
+        if (isSet(allocation, ParticipantFlags.TOUCHED_PROPERTY)) {
+            storedFlags |= ParticipantFlags.TOUCHED;
+        }
+        if (isSet(allocation, ParticipantFlags.CONFIRMED_PROPERTY)) {
+            storedFlags |= ParticipantFlags.CONFIRMED;
+        }
+        if (isSet(allocation, ParticipantFlags.CONTAMINATED_PROPERTY)) {
+            storedFlags |= ParticipantFlags.CONTAMINATED;
+        }
+        flags.merge(experimentId, storedFlags);
+
+        JsonElement candidateId = allocation.get("cid");
+        JsonElement genome = allocation.get("genome");
+        return new Allocation(allocation, experimentId,
+                candidateId == null || candidateId.isJsonNull() ? null : candidateId.getAsString(),
+                genome != null && genome.isJsonObject() ? genome.getAsJsonObject() : null,
+                audienceQuery,
+                isSet(allocation, "excluded"),
+                flags);
+    }
+
+    private static boolean isSet(JsonObject allocation, String property) {
+        JsonElement value = allocation.get(property);
+        return value != null && value.getAsBoolean();
+    }
+
+    String getExperimentId() {
+        return experimentId;
+    }
+
+    String getCandidateId() {
+        return candidateId;
+    }
+
+    /**
+     * Returns the allocation's genome.
+     * @return the genome, null if the allocation has none
+     */
+    JsonObject getGenome() {
+        return genome;
+    }
+
+    Audience.Condition getAudienceQuery() {
+        return audienceQuery;
+    }
+
+    boolean isExcluded() {
+        return excluded;
+    }
+
+    JsonObject getSource() {
+        return source;
+    }
+
+    boolean isTouched() {
+        return flags.isSet(experimentId, ParticipantFlags.TOUCHED);
+    }
+
+    boolean isConfirmed() {
+        return flags.isSet(experimentId, ParticipantFlags.CONFIRMED);
+    }
+
+    boolean isContaminated() {
+        return flags.isSet(experimentId, ParticipantFlags.CONTAMINATED);
+    }
+
+    /**
+     * Marks the allocation as touched.
+     * @return true if the allocation was not touched before
+     */
+    boolean markTouched() {
+        return flags.mark(experimentId, ParticipantFlags.TOUCHED, 0);
+    }
+
+    /**
+     * Marks the allocation as confirmed unless it was confirmed or
+     * contaminated before.
+     * @return true if the allocation was marked by this call
+     */
+    boolean markConfirmed() {
+        return flags.mark(experimentId, ParticipantFlags.CONFIRMED,
+                ParticipantFlags.CONTAMINATED);
+    }
+
+    /**
+     * Marks the allocation as contaminated unless it was confirmed or
+     * contaminated before.
+     * @return true if the allocation was marked by this call
+     */
+    boolean markContaminated() {
+        return flags.mark(experimentId, ParticipantFlags.CONTAMINATED,
+                ParticipantFlags.CONFIRMED);
+    }
+}
@@ -0,0 +1,493 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a participant's allocations into a compact binary form and back.
+ * <p>
+ *     Allocation stores can hold the encoded bytes instead of a tree of JSON
+ *     elements per participant and decode them only when the allocations are
+ *     retrieved. Every string is written once to a table, so repeated
+ *     experiment ids, candidate ids and genome keys cost a single index.
+ *     Lengths and integers are written as varints, the boolean properties of
+ *     an allocation are packed into one byte and each genome is flattened into
+ *     a table of key paths and values.
+ * </p>
+ * <p>
+ *     The encoding starts with its version. Decoding an unknown version fails
+ *     rather than guessing at the layout.
+ * </p>
+ */
+public final class AllocationCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int HAS_EID = 1;
+    private static final int HAS_CID = 2;
+    private static final int HAS_GENOME = 4;
+
+    // packed two bits each, 0 when absent, 1 when false and 2 when true
+    private static final String[] FLAGS = {"excluded", "touched", "confirmed", "contaminated"};
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int STRING = 3;
+    private static final int INTEGER = 4;
+    private static final int NUMBER = 5;
+    private static final int ARRAY = 6;
+    private static final int OBJECT = 7;
+
+    private AllocationCodec() {}
+
+    /**
+     * Encodes a participant's allocations.
+     * @param allocations the participant's allocations
+     * @return the encoded allocations
+     * @throws IllegalArgumentException if an allocation is not a JSON object
+     */
+    public static byte[] encode(JsonArray allocations) {
+        Encoder encoder = new Encoder();
+        encoder.body.writeVarint(allocations.size());
+        for (JsonElement allocation : allocations) {
+            if (!allocation.isJsonObject()) {
+                throw new IllegalArgumentException("An allocation is not a JSON object.");
+            }
+            encoder.writeAllocation(allocation.getAsJsonObject());
+        }
+
+        Output output = new Output(encoder.body.size + 16 * encoder.strings.size());
+        output.writeVarint(VERSION);
+        output.writeVarint(encoder.strings.size());
+        for (String string : encoder.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeVarint(bytes.length);
+            output.write(bytes, bytes.length);
+        }
+        output.write(encoder.body.bytes, encoder.body.size);
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes a participant's allocations.
+     * @param encoded allocations encoded by {@link #encode(JsonArray)}
+     * @return the participant's allocations
+     * @throws IllegalArgumentException if the bytes are not encoded allocations
+     */
+    public static JsonArray decode(byte[] encoded) {
+        try {
+            Input input = new Input(encoded);
+            int version = input.readVarint();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Unsupported allocation encoding version %d.", version));
+            }
+
+            String[] strings = new String[input.readVarint()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = input.readString(input.readVarint());
+            }
+
+            Decoder decoder = new Decoder(input, strings);
+            int size = input.readVarint();
+            JsonArray allocations = new JsonArray(size);
+            for (int i = 0; i < size; i++) {
+                allocations.add(decoder.readAllocation());
+            }
+
+            if (input.position != encoded.length) {
+                throw new IllegalArgumentException("The encoded allocations have trailing bytes.");
+            }
+            return allocations;
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("The encoded allocations are truncated.", e);
+        }
+    }
+
+    private static final class Encoder {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Output body = new Output(256);
+
+        private void writeAllocation(JsonObject allocation) {
+            int fields = 0;
+            JsonElement eid = allocation.get("eid");
+            if (isString(eid)) {
+                fields |= HAS_EID;
+            }
+            JsonElement cid = allocation.get("cid");
+            if (isString(cid)) {
+                fields |= HAS_CID;
+            }
+            JsonElement genome = allocation.get("genome");
+            if (genome != null && genome.isJsonObject()) {
+                fields |= HAS_GENOME;
+            }
+
+            int flags = 0;
+            for (int i = 0; i < FLAGS.length; i++) {
+                JsonElement flag = allocation.get(FLAGS[i]);
+                if (flag != null && flag.isJsonPrimitive()
+                        && flag.getAsJsonPrimitive().isBoolean()) {
+                    flags |= (flag.getAsBoolean() ? 2 : 1) << (2 * i);
+                }
+            }
+
+            body.writeByte(fields);
+            body.writeByte(flags);
+            if ((fields & HAS_EID) != 0) {
+                writeString(eid.getAsString());
+            }
+            if ((fields & HAS_CID) != 0) {
+                writeString(cid.getAsString());
+            }
+            if ((fields & HAS_GENOME) != 0) {
+                writeGenome(genome.getAsJsonObject());
+            }
+
+            List<Map.Entry<String, JsonElement>> others = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> property : allocation.entrySet()) {
+                if (!isPacked(property.getKey(), fields, flags)) {
+                    others.add(property);
+                }
+            }
+            body.writeVarint(others.size());
+            for (Map.Entry<String, JsonElement> property : others) {
+                writeString(property.getKey());
+                writeValue(property.getValue());
+            }
+        }
+
+        /**
+         * Writes the genome's leaves in order, each as the number of keys it
+         * shares with the previous leaf's path, its remaining keys and its value.
+         */
+        private void writeGenome(JsonObject genome) {
+            List<int[]> paths = new ArrayList<>();
+            List<JsonElement> values = new ArrayList<>();
+            flatten(genome, new int[0], paths, values);
+
+            body.writeVarint(paths.size());
+            int[] previous = new int[0];
+            for (int i = 0; i < paths.size(); i++) {
+                int[] path = paths.get(i);
+                int shared = 0;
+                int maxShared = Math.min(previous.length, path.length) - 1;
+                while (shared < maxShared && previous[shared] == path[shared]) {
+                    shared++;
+                }
+
+                body.writeVarint(shared);
+                body.writeVarint(path.length - shared);
+                for (int k = shared; k < path.length; k++) {
+                    body.writeVarint(path[k]);
+                }
+                writeValue(values.get(i));
+                previous = path;
+            }
+        }
+
+        private void flatten(JsonObject object, int[] prefix, List<int[]> paths,
+                             List<JsonElement> values) {
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                int[] path = Arrays.copyOf(prefix, prefix.length + 1);
+                path[prefix.length] = intern(entry.getKey());
+
+                JsonElement value = entry.getValue();
+                if (value.isJsonObject() && value.getAsJsonObject().size() > 0) {
+                    flatten(value.getAsJsonObject(), path, paths, values);
+                } else {
+                    paths.add(path);
+                    values.add(value);
+                }
+            }
+        }
+
+        private void writeValue(JsonElement value) {
+            if (value == null || value.isJsonNull()) {
+                body.writeByte(NULL);
+            } else if (value.isJsonArray()) {
+                JsonArray array = value.getAsJsonArray();
+                body.writeByte(ARRAY);
+                body.writeVarint(array.size());
+                for (JsonElement element : array) {
+                    writeValue(element);
+                }
+            } else if (value.isJsonObject()) {
+                JsonObject object = value.getAsJsonObject();
+                body.writeByte(OBJECT);
+                body.writeVarint(object.size());
+                for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                    writeString(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                writePrimitive(value.getAsJsonPrimitive());
+            }
+        }
+
+        private void writePrimitive(JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                body.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                body.writeByte(STRING);
+                writeString(primitive.getAsString());
+            } else {
+                String number = primitive.getAsNumber().toString();
+                Long integer = parseInteger(number);
+                if (integer != null) {
+                    body.writeByte(INTEGER);
+                    body.writeVarlong((integer << 1) ^ (integer >> 63));
+                } else {
+                    body.writeByte(NUMBER);
+                    writeString(number);
+                }
+            }
+        }
+
+        private void writeString(String string) {
+            body.writeVarint(intern(string));
+        }
+
+        private int intern(String string) {
+            Integer index = indexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+
+        private static boolean isPacked(String property, int fields, int flags) {
+            if (property.equals("eid")) {
+                return (fields & HAS_EID) != 0;
+            } else if (property.equals("cid")) {
+                return (fields & HAS_CID) != 0;
+            } else if (property.equals("genome")) {
+                return (fields & HAS_GENOME) != 0;
+            }
+
+            for (int i = 0; i < FLAGS.length; i++) {
+                if (property.equals(FLAGS[i])) {
+                    return ((flags >> (2 * i)) & 3) != 0;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isString(JsonElement element) {
+            return element != null && element.isJsonPrimitive()
+                    && element.getAsJsonPrimitive().isString();
+        }
+
+        private static Long parseInteger(String number) {
+            try {
+                return Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Decoder {
+
+        private final Input input;
+        private final String[] strings;
+
+        private Decoder(Input input, String[] strings) {
+            this.input = input;
+            this.strings = strings;
+        }
+
+        private JsonObject readAllocation() {
+            JsonObject allocation = new JsonObject();
+            int fields = input.readByte();
+            int flags = input.readByte();
+            if ((fields & HAS_EID) != 0) {
+                allocation.addProperty("eid", readString());
+            }
+            if ((fields & HAS_CID) != 0) {
+                allocation.addProperty("cid", readString());
+            }
+            if ((fields & HAS_GENOME) != 0) {
+                allocation.add("genome", readGenome());
+            }
+
+            for (int i = 0; i < FLAGS.length; i++) {
+                int flag = (flags >> (2 * i)) & 3;
+                if (flag != 0) {
+                    allocation.addProperty(FLAGS[i], flag == 2);
+                }
+            }
+
+            int others = input.readVarint();
+            for (int i = 0; i < others; i++) {
+                String property = readString();
+                allocation.add(property, readValue());
+            }
+            return allocation;
+        }
+
+        private JsonObject readGenome() {
+            JsonObject genome = new JsonObject();
+            List<JsonObject> parents = new ArrayList<>();
+            parents.add(genome);
+
+            int leaves = input.readVarint();
+            for (int i = 0; i < leaves; i++) {
+                int shared = input.readVarint();
+                int remaining = input.readVarint();
+                if (shared >= parents.size() || remaining < 1) {
+                    throw new IllegalArgumentException("The encoded genome is malformed.");
+                }
+
+                parents.subList(shared + 1, parents.size()).clear();
+                for (int k = 1; k < remaining; k++) {
+                    JsonObject child = new JsonObject();
+                    parents.get(parents.size() - 1).add(readString(), child);
+                    parents.add(child);
+                }
+                String key = readString();
+                parents.get(parents.size() - 1).add(key, readValue());
+            }
+            return genome;
+        }
+
+        private JsonElement readValue() {
+            int tag = input.readByte();
+            if (tag == NULL) {
+                return JsonNull.INSTANCE;
+            } else if (tag == TRUE || tag == FALSE) {
+                return new JsonPrimitive(tag == TRUE);
+            } else if (tag == STRING) {
+                return new JsonPrimitive(readString());
+            } else if (tag == INTEGER) {
+                long zigzag = input.readVarlong();
+                return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+            } else if (tag == NUMBER) {
+                return new JsonPrimitive(new BigDecimal(readString()));
+            } else if (tag == ARRAY) {
+                int size = input.readVarint();
+                JsonArray array = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    array.add(readValue());
+                }
+                return array;
+            } else if (tag == OBJECT) {
+                int size = input.readVarint();
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < size; i++) {
+                    String key = readString();
+                    object.add(key, readValue());
+                }
+                return object;
+            }
+            throw new IllegalArgumentException(String.format("Unknown value tag %d.", tag));
+        }
+
+        private String readString() {
+            return strings[input.readVarint()];
+        }
+    }
+
+    private static final class Output {
+
+        private byte[] bytes;
+        private int size;
+
+        private Output(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeVarint(int value) {
+            writeVarlong(value & 0xffffffffL);
+        }
+
+        private void writeVarlong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void write(byte[] source, int length) {
+            ensureCapacity(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] bytes;
+        private int position;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int readByte() {
+            return bytes[position++] & 0xff;
+        }
+
+        private int readVarint() {
+            long value = readVarlong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The encoded allocations are malformed.");
+            }
+            return (int) value;
+        }
+
+        private long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("The encoded allocations are malformed.");
+        }
+
+        private String readString(int length) {
+            if (position + length > bytes.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            String string = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+    }
+}
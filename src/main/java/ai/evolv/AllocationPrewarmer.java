@@ -0,0 +1,162 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches and stores the allocations of a batch of participants with a bounded
+ * number of requests in flight.
+ * <p>
+ *     No thread is blocked while the requests are in flight, the next
+ *     participant is fetched from whichever thread completes a request.
+ *     Participants whose stored allocations are still fresh are not fetched.
+ * </p>
+ */
+final class AllocationPrewarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllocationPrewarmer.class);
+
+    private final AscendConfig config;
+    private final int maxConcurrency;
+    private final Iterator<AscendParticipant> pending;
+    private final CompletableFuture<PrewarmResult> result = new CompletableFuture<>();
+    private final AtomicInteger drains = new AtomicInteger();
+
+    // guarded by this
+    private final Set<String> prewarmed = new HashSet<>();
+    private final Map<String, Throwable> failures = new HashMap<>();
+    private int inFlight;
+    private int remaining;
+
+    private AllocationPrewarmer(AscendConfig config, List<AscendParticipant> participants,
+                                int maxConcurrency) {
+        this.config = config;
+        this.maxConcurrency = maxConcurrency;
+        this.pending = participants.iterator();
+        this.remaining = participants.size();
+    }
+
+    /**
+     * Starts pre-warming the participants' allocations.
+     * @param config general configurations for the SDK
+     * @param participants the participants to prewarm
+     * @param maxConcurrency the largest number of requests in flight
+     * @return a future of the outcome, completed once every participant is done
+     */
+    static CompletableFuture<PrewarmResult> prewarm(AscendConfig config,
+                                                    Collection<AscendParticipant> participants,
+                                                    int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        if (config.getAllocationFreshness() <= 0) {
+            LOGGER.warn("The allocation freshness is not set, clients will fetch the "
+                    + "allocations of prewarmed participants again.");
+        }
+
+        AllocationPrewarmer prewarmer = new AllocationPrewarmer(config,
+                new ArrayList<>(participants), maxConcurrency);
+        if (participants.isEmpty()) {
+            prewarmer.result.complete(new PrewarmResult(new HashSet<>(), new HashMap<>()));
+        } else {
+            prewarmer.drain();
+        }
+        return prewarmer.result;
+    }
+
+    /**
+     * Starts requests until maxConcurrency are in flight. Requests that
+     * complete while the loop runs make it go around once more instead of
+     * recursing into it.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            AscendParticipant participant = next();
+            while (participant != null) {
+                start(participant);
+                participant = next();
+            }
+            missed = drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized AscendParticipant next() {
+        if (inFlight >= maxConcurrency || !pending.hasNext()) {
+            return null;
+        }
+        inFlight++;
+        return pending.next();
+    }
+
+    private void start(AscendParticipant participant) {
+        String uid = participant.getUserId();
+        CompletableFuture<JsonArray> allocations;
+        try {
+            if (isFresh(config.getAscendAllocationStore().get(uid))) {
+                LOGGER.debug("The allocations of {} are fresh.", uid);
+                allocations = CompletableFuture.completedFuture(null);
+            } else {
+                allocations = new Allocator(config, participant).prefetchAllocations();
+            }
+        } catch (RuntimeException e) {
+            allocations = new CompletableFuture<>();
+            allocations.completeExceptionally(e);
+        }
+
+        allocations.whenComplete((fetched, e) -> {
+            complete(uid, e);
+            drain();
+        });
+    }
+
+    private boolean isFresh(JsonArray stored) {
+        if (config.getAllocationFreshness() <= 0 || !Allocator.allocationsNotEmpty(stored)) {
+            return false;
+        }
+        long fetchedAt = Allocations.getFetchedAt(stored);
+        return fetchedAt >= 0
+                && System.currentTimeMillis() - fetchedAt < config.getAllocationFreshness();
+    }
+
+    private void complete(String uid, Throwable e) {
+        PrewarmResult completed = null;
+        synchronized (this) {
+            if (e == null) {
+                prewarmed.add(uid);
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null
+                        ? e.getCause() : e;
+                LOGGER.debug("Unable to prewarm the allocations of {}.", uid, cause);
+                failures.put(uid, cause);
+            }
+            inFlight--;
+            remaining--;
+            if (remaining == 0) {
+                completed = new PrewarmResult(prewarmed, failures);
+            }
+        }
+
+        if (completed != null) {
+            result.complete(completed);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A participant's allocations, parsed and indexed once per allocation snapshot.
+ * <p>
+ *     Every genome is flattened once into a map from a dotted key to the
+ *     values stored under that key, in allocation order. Retrieving a key is
+ *     a single hash lookup instead of a walk over every genome.
+ * </p>
+ * <p>
+ *     Audience queries are compiled along with the genomes, and the filter
+ *     verdicts are computed once for a participant's user attributes and
+ *     reused until the attributes change.
+ * </p>
+ */
+final class AllocationSet {
+
+    private static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+    private final JsonArray source;
+    private final Allocation[] allocations;
+    private final Map<String, Candidate[]> index;
+    private final Set<String> activeExperiments;
+    private final AscendMetrics metrics;
+
+    private volatile Verdicts verdicts;
+
+    private AllocationSet(JsonArray source, Allocation[] allocations,
+                          Map<String, Candidate[]> index, Set<String> activeExperiments,
+                          AscendMetrics metrics) {
+        this.source = source;
+        this.allocations = allocations;
+        this.index = index;
+        this.activeExperiments = activeExperiments;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Parses the allocations and builds their key index.
+     * @param allocations the participant's allocations
+     * @return the parsed allocations
+     */
+    static AllocationSet parse(JsonArray allocations) {
+        return parse(allocations, new ParticipantFlags());
+    }
+
+    /**
+     * Parses the allocations and builds their key index.
+     * @param allocations the participant's allocations
+     * @param flags the flags of the participant the allocations belong to
+     * @return the parsed allocations
+     */
+    static AllocationSet parse(JsonArray allocations, ParticipantFlags flags) {
+        return parse(allocations, flags, NoopMetrics.INSTANCE);
+    }
+
+    /**
+     * Parses the allocations and builds their key index.
+     * @param allocations the participant's allocations
+     * @param flags the flags of the participant the allocations belong to
+     * @param metrics where the time spent evaluating audiences is recorded
+     * @return the parsed allocations
+     */
+    static AllocationSet parse(JsonArray allocations, ParticipantFlags flags,
+                               AscendMetrics metrics) {
+        Map<String, List<Candidate>> paths = new HashMap<>();
+        Set<String> activeExperiments = new HashSet<>();
+        Allocation[] parsed = new Allocation[allocations.size()];
+
+        for (int i = 0; i < parsed.length; i++) {
+            Allocation allocation = Allocation.parse(allocations.get(i).getAsJsonObject(), flags);
+            parsed[i] = allocation;
+            activeExperiments.add(allocation.getExperimentId());
+
+            if (allocation.getGenome() != null) {
+                flatten(i, allocation, null, allocation.getGenome(), paths);
+            }
+        }
+
+        Map<String, Candidate[]> index = new HashMap<>(paths.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Candidate>> path : paths.entrySet()) {
+            index.put(path.getKey(), path.getValue().toArray(NO_CANDIDATES));
+        }
+
+        return new AllocationSet(allocations, parsed, index,
+                Collections.unmodifiableSet(activeExperiments), metrics);
+    }
+
+    private static void flatten(int allocationIndex, Allocation allocation, String prefix,
+                                JsonObject node, Map<String, List<Candidate>> paths) {
+        for (Map.Entry<String, JsonElement> entry : node.entrySet()) {
+            String name = entry.getKey();
+            if (name.indexOf('.') >= 0) {
+                // a dotted key always splits on the dot, so this node is unreachable
+                continue;
+            }
+
+            String path = prefix == null ? name : prefix + "." + name;
+            JsonElement value = entry.getValue();
+            paths.computeIfAbsent(path, p -> new ArrayList<>())
+                    .add(new Candidate(allocationIndex, allocation, value));
+
+            if (value.isJsonObject()) {
+                flatten(allocationIndex, allocation, path, value.getAsJsonObject(), paths);
+            }
+        }
+    }
+
+    /**
+     * Finds every allocation whose genome holds a value for the key.
+     * @param key a dotted key identifying a value in the genome
+     * @return the candidates in allocation order, empty if none hold the key
+     */
+    Candidate[] lookup(String key) {
+        Candidate[] candidates = index.get(key);
+        return candidates == null ? NO_CANDIDATES : candidates;
+    }
+
+    /**
+     * Determines whether the participant is filtered from an allocation.
+     * <p>
+     *     The verdicts for every allocation are computed the first time they are
+     *     needed and reused for as long as the user attributes stay equal. The
+     *     lookups of one client call share a snapshot, so all but the first find
+     *     the verdicts by identity.
+     * </p>
+     * @param allocationIndex the position of the allocation
+     * @param userAttributes the participant's user attributes, taken once per call
+     * @return true if participant should be filtered, false if not
+     */
+    boolean isFiltered(int allocationIndex, AttributesSnapshot userAttributes) {
+        Verdicts last = verdicts;
+        if (last == null || last.userAttributes != userAttributes) {
+            if (last != null && last.userAttributes.sameAs(userAttributes)) {
+                // later lookups of the same call find the verdicts by identity
+                last = new Verdicts(userAttributes, last.filtered);
+            } else {
+                final long start = metrics.startTimer();
+                boolean[] filtered = new boolean[allocations.length];
+                for (int i = 0; i < allocations.length; i++) {
+                    filtered[i] = Audience.filter(userAttributes.get(),
+                            allocations[i].isExcluded(), allocations[i].getAudienceQuery());
+                }
+
+                last = new Verdicts(userAttributes, filtered);
+                metrics.stopTimer(AscendMetrics.Timer.AUDIENCE_EVALUATION, start);
+            }
+            verdicts = last;
+        }
+
+        return last.filtered[allocationIndex];
+    }
+
+    int size() {
+        return allocations.length;
+    }
+
+    Allocation getAllocation(int allocationIndex) {
+        return allocations[allocationIndex];
+    }
+
+    JsonArray getSource() {
+        return source;
+    }
+
+    Set<String> getActiveExperiments() {
+        return activeExperiments;
+    }
+
+    /**
+     * A value held under a key together with the allocation it belongs to.
+     */
+    static final class Candidate {
+
+        private final int allocationIndex;
+        private final Allocation allocation;
+        private final JsonElement value;
+
+        private volatile Decoded decoded;
+
+        private Candidate(int allocationIndex, Allocation allocation, JsonElement value) {
+            this.allocationIndex = allocationIndex;
+            this.allocation = allocation;
+            this.value = value;
+        }
+
+        int getAllocationIndex() {
+            return allocationIndex;
+        }
+
+        Allocation getAllocation() {
+            return allocation;
+        }
+
+        JsonElement getValue() {
+            return value;
+        }
+
+        /**
+         * Decodes the value, reusing the last decoded value of the same type.
+         * <p>
+         *     Only immutable values are remembered, mutable ones are decoded
+         *     for every caller so they are never shared.
+         * </p>
+         * @param cls the requested type
+         * @param <T> the requested type
+         * @return the decoded value
+         */
+        @SuppressWarnings("unchecked")
+        <T> T decode(Class<T> cls) {
+            Decoded last = decoded;
+            if (last != null && last.type == cls) {
+                return (T) last.value;
+            }
+
+            T value = TreatmentDecoder.decode(this.value, cls);
+            if (TreatmentDecoder.isImmutable(cls)) {
+                decoded = new Decoded(cls, value);
+            }
+            return value;
+        }
+    }
+
+    private static final class Decoded {
+
+        private final Class<?> type;
+        private final Object value;
+
+        private Decoded(Class<?> type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static final class Verdicts {
+
+        private final AttributesSnapshot userAttributes;
+        private final boolean[] filtered;
+
+        private Verdicts(AttributesSnapshot userAttributes, boolean[] filtered) {
+            this.userAttributes = userAttributes;
+            this.filtered = filtered;
+        }
+    }
+}
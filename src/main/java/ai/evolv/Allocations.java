@@ -1,16 +1,14 @@
 package ai.evolv;
 
-import ai.evolv.exceptions.AscendKeyError;
-
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -18,73 +16,115 @@ import org.slf4j.LoggerFactory;
 
 class Allocations {
 
-    private static final String TOUCHED = "touched";
-    private static final String CONFIRMED = "confirmed";
-    private static final String CONTAMINATED = "contaminated";
+    private static final String FETCHED_AT = "fetched_at";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Allocations.class);
 
-    private final JsonArray allocations;
+    private final AllocationSet allocations;
     private final AscendAllocationStore store;
 
-    private final Audience audience = new Audience();
-
     Allocations(JsonArray allocations, AscendAllocationStore store) {
+        this(AllocationSet.parse(allocations), store);
+    }
+
+    Allocations(AllocationSet allocations, AscendAllocationStore store) {
         this.allocations = allocations;
         this.store = store;
     }
 
-    <T> T getValueFromAllocations(String key, Class<T> cls, AscendParticipant participant)
-            throws AscendKeyError {
-        ArrayList<String> keyParts = new ArrayList<>(Arrays.asList(key.split("\\.")));
-        if (keyParts.isEmpty()) {
-            throw new AscendKeyError("Key provided was empty.");
-        }
+    /**
+     * Retrieves the value of a key from the first allocation the participant
+     * is not filtered from.
+     * <p>
+     *     A key that is missing is part of normal operation, so it is reported
+     *     through an empty result rather than an exception.
+     * </p>
+     * @param key a dotted key identifying a value in the genome
+     * @param cls the type of the value
+     * @param participant the participant the allocations belong to
+     * @param <T> the type of the value
+     * @return the value, empty if no allocation holds a value for the key
+     */
+    <T> Optional<T> lookupValue(String key, Class<T> cls, AscendParticipant participant) {
+        AllocationSet.Candidate[] candidates = allocations.lookup(key);
+        AttributesSnapshot userAttributes = candidates.length == 0
+                ? null : AttributesSnapshot.of(participant.getUserAttributes());
+        for (AllocationSet.Candidate candidate : candidates) {
+            Allocation allocation = candidate.getAllocation();
+            if (allocations.isFiltered(candidate.getAllocationIndex(), userAttributes)) {
+                LOGGER.debug("Participant was filtered from experiment {}",
+                        allocation.getExperimentId());
+                continue;
+            }
 
-        for (JsonElement a : allocations) {
-            JsonObject allocation = a.getAsJsonObject();
-            if (!audience.filter(participant.getUserAttributes(), allocation)) {
-                try {
-                    JsonElement element = getElementFromGenome(allocation.get("genome"), keyParts);
-                    T value = new Gson().fromJson(element, cls);
-                    if (value != null) {
-                        LOGGER.debug(String.format("Found value for key '%s' in experiment %s",
-                                key, allocation.get("eid").getAsString()));
-                        markTouched(allocation);
-                        store.put(participant.getUserId(), allocations);
-                    }
-                    return value;
-                } catch (AscendKeyError e) {
-                    LOGGER.debug(String.format("Unable to find key '%s' in experiment %s.",
-                            key, allocation.get("eid").getAsString()));
-                    continue;
+            T value = candidate.decode(cls);
+            if (value != null) {
+                LOGGER.debug("Found value for key '{}' in experiment {}", key,
+                        allocation.getExperimentId());
+                if (allocation.markTouched()) {
+                    store.putFlag(participant.getUserId(), allocation.getExperimentId(),
+                            ParticipantFlags.TOUCHED_PROPERTY);
                 }
             }
-
-            LOGGER.debug(String.format("Participant was filtered from experiment %s",
-                    allocation.get("eid").getAsString()));
+            return Optional.ofNullable(value);
         }
 
-        throw new AscendKeyError(String.format("No value was found in any allocations for key: %s",
-                keyParts.toString()));
+        return Optional.empty();
     }
 
-    private JsonElement getElementFromGenome(JsonElement genome, List<String> keyParts)
-            throws AscendKeyError {
-        JsonElement element = genome;
-        if (element == null) {
-            throw new AscendKeyError("Allocation genome was empty.");
-        }
+    /**
+     * Retrieves the values of several keys in a single pass.
+     * <p>
+     *     The audience filter verdicts are shared with every other lookup and the
+     *     newly touched allocations are stored after every key has been resolved.
+     *     Keys that cannot be resolved are left out of the returned map.
+     * </p>
+     * @param keysWithDefaults the keys to retrieve, each with a default value whose
+     *                         type decides the type of the retrieved value
+     * @param participant the participant the allocations belong to
+     * @return the retrieved values by key
+     */
+    Map<String, Object> getValuesFromAllocations(Map<String, Object> keysWithDefaults,
+                                                 AscendParticipant participant) {
+        Map<String, Object> values = new HashMap<>();
+        List<String> touchedExperiments = new ArrayList<>();
+        AttributesSnapshot userAttributes = AttributesSnapshot.of(participant.getUserAttributes());
+
+        for (Map.Entry<String, Object> keyWithDefault : keysWithDefaults.entrySet()) {
+            String key = keyWithDefault.getKey();
+            Object defaultValue = keyWithDefault.getValue();
+            if (defaultValue == null) {
+                LOGGER.debug("No default was given for key '{}', skipping it.", key);
+                continue;
+            }
+
+            for (AllocationSet.Candidate candidate : allocations.lookup(key)) {
+                if (allocations.isFiltered(candidate.getAllocationIndex(), userAttributes)) {
+                    continue;
+                }
 
-        for (String part : keyParts) {
-            JsonObject object = element.getAsJsonObject();
-            element = object.get(part);
-            if (element == null) {
-                throw new AscendKeyError("Could not find value for key: " + keyParts.toString());
+                try {
+                    Object value = candidate.decode(defaultValue.getClass());
+                    if (value != null) {
+                        values.put(key, value);
+                        Allocation allocation = candidate.getAllocation();
+                        if (allocation.markTouched()) {
+                            touchedExperiments.add(allocation.getExperimentId());
+                        }
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Unable to decode the value for key '{}'.", key, e);
+                }
+                break;
             }
         }
 
-        return element;
+        for (String experimentId : touchedExperiments) {
+            store.putFlag(participant.getUserId(), experimentId,
+                    ParticipantFlags.TOUCHED_PROPERTY);
+        }
+
+        return values;
     }
 
     /**
@@ -96,6 +136,11 @@ class Allocations {
      *     If there are any live experiments that are not in the previous allocations
      *     add the new allocation to the allocations list.
      * </p>
+     * <p>
+     *     The previous allocations are indexed by experiment id first, so the
+     *     reconciliation is linear in the number of allocations. Experiment ids
+     *     are compared as strings, a numeric id matches however it was parsed.
+     * </p>
      *
      * @param previousAllocations the stored allocations
      * @param currentAllocations the allocations recently fetched
@@ -103,25 +148,33 @@ class Allocations {
      */
     static JsonArray reconcileAllocations(JsonArray previousAllocations,
                                           JsonArray currentAllocations) {
-        JsonArray allocations = new JsonArray();
+        // index the previous allocations by experiment, keeping their order
+        Map<String, List<JsonObject>> previousByEid =
+                new HashMap<>(previousAllocations.size() * 4 / 3 + 1);
+        for (JsonElement pa : previousAllocations) {
+            JsonObject previousAllocation = pa.getAsJsonObject();
+            String previousEid = previousAllocation.get("eid").getAsString();
+            List<JsonObject> experimentAllocations = previousByEid.get(previousEid);
+            if (experimentAllocations == null) {
+                experimentAllocations = new ArrayList<>(1);
+                previousByEid.put(previousEid, experimentAllocations);
+            }
+            experimentAllocations.add(previousAllocation);
+        }
 
+        JsonArray allocations = new JsonArray(currentAllocations.size());
         for (JsonElement ca : currentAllocations) {
             JsonObject currentAllocation = ca.getAsJsonObject();
-            String currentEid = currentAllocation.get("eid").toString();
-            boolean previousFound = false;
-
-            for (JsonElement pa : previousAllocations) {
-                JsonObject previousAllocation = pa.getAsJsonObject();
-                String previousEid = previousAllocation.get("eid").toString();
+            List<JsonObject> experimentAllocations =
+                    previousByEid.get(currentAllocation.get("eid").getAsString());
 
-                if (previousEid.equals(currentEid)) {
-                    allocations.add(pa.getAsJsonObject());
-                    previousFound = true;
-                }
+            if (experimentAllocations == null) {
+                allocations.add(currentAllocation);
+                continue;
             }
 
-            if (!previousFound) {
-                allocations.add(ca.getAsJsonObject());
+            for (JsonObject previousAllocation : experimentAllocations) {
+                allocations.add(previousAllocation);
             }
         }
 
@@ -129,41 +182,71 @@ class Allocations {
     }
 
     Set<String> getActiveExperiments() {
-        Set<String> activeExperiments = new HashSet<>();
-        for (JsonElement a : allocations) {
-            JsonObject allocation = a.getAsJsonObject();
-            activeExperiments.add(allocation.get("eid").getAsString());
-        }
-        return activeExperiments;
-    }
-
-    static JsonObject markTouched(JsonObject allocation) {
-        allocation.addProperty(TOUCHED, true);
-        return allocation;
-    }
-
-    static boolean isTouched(JsonObject allocation) {
-        return allocation.has(TOUCHED) &&
-                allocation.get(TOUCHED).getAsBoolean();
-    }
-
-    static JsonObject markConfirmed(JsonObject allocation) {
-        allocation.addProperty(CONFIRMED, true);
-        return allocation;
+        return allocations.getActiveExperiments();
     }
 
-    static boolean isConfirmed(JsonObject allocation) {
-        return allocation.has(CONFIRMED) &&
-                allocation.get(CONFIRMED).getAsBoolean();
+    /**
+     * Records when the allocations were fetched from the participant api.
+     * <p>
+     *     The allocations are copied rather than changed, as reconciled
+     *     allocations share their objects with the stored ones that clients
+     *     may be reading. The copies share the allocations' genomes.
+     * </p>
+     * @param allocations the fetched allocations
+     * @param fetchedAt the time of the fetch in milliseconds since the epoch
+     * @return copies of the allocations that hold the time of the fetch
+     */
+    static JsonArray markFetched(JsonArray allocations, long fetchedAt) {
+        JsonArray marked = new JsonArray(allocations.size());
+        for (JsonElement allocation : allocations) {
+            JsonObject copy = new JsonObject();
+            for (Map.Entry<String, JsonElement> property
+                    : allocation.getAsJsonObject().entrySet()) {
+                copy.add(property.getKey(), property.getValue());
+            }
+            copy.addProperty(FETCHED_AT, fetchedAt);
+            marked.add(copy);
+        }
+        return marked;
     }
 
-    static JsonObject markContaminated(JsonObject allocation) {
-        allocation.addProperty(CONTAMINATED, true);
-        return allocation;
+    /**
+     * Finds when the allocations were fetched from the participant api.
+     * @param allocations the stored allocations
+     * @return the time of the oldest fetch in milliseconds since the epoch, -1
+     *      if any allocation was stored without one
+     */
+    static long getFetchedAt(JsonArray allocations) {
+        long fetchedAt = Long.MAX_VALUE;
+        for (JsonElement allocation : allocations) {
+            JsonElement allocationFetchedAt = allocation.getAsJsonObject().get(FETCHED_AT);
+            if (allocationFetchedAt == null) {
+                return -1;
+            }
+            fetchedAt = Math.min(fetchedAt, allocationFetchedAt.getAsLong());
+        }
+        return fetchedAt == Long.MAX_VALUE ? -1 : fetchedAt;
     }
 
-    static boolean isContaminated(JsonObject allocation) {
-        return allocation.has(CONTAMINATED) &&
-                allocation.get(CONTAMINATED).getAsBoolean();
+    /**
+     * Sets a flag of the participant's allocation into an experiment.
+     * @param allocations the allocations to change
+     * @param experimentId the experiment of the allocation
+     * @param flag the flag to set
+     * @return true if the flag was not set before
+     */
+    static boolean setFlag(JsonArray allocations, String experimentId, String flag) {
+        boolean changed = false;
+        for (JsonElement allocation : allocations) {
+            JsonObject experimentAllocation = allocation.getAsJsonObject();
+            JsonElement eid = experimentAllocation.get("eid");
+            JsonElement value = experimentAllocation.get(flag);
+            if (eid != null && experimentId.equals(eid.getAsString())
+                    && (value == null || !value.getAsBoolean())) {
+                experimentAllocation.addProperty(flag, true);
+                changed = true;
+            }
+        }
+        return changed;
     }
 }
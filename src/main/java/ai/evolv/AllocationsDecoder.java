@@ -0,0 +1,45 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the Participant API's allocations response.
+ * <p>
+ *     The response bytes are read by a streaming JsonReader in a single pass,
+ *     without first copying the body into a String.
+ * </p>
+ */
+final class AllocationsDecoder {
+
+    private AllocationsDecoder() {
+    }
+
+    /**
+     * Decodes an allocations response.
+     * @param body the UTF-8 encoded response body
+     * @return the allocations
+     * @throws JsonParseException if the body is not a JSON array
+     */
+    static JsonArray decode(byte[] body) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            JsonElement allocations = JsonParser.parseReader(reader);
+            if (!allocations.isJsonArray() || reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("The allocations response is not a JSON array.");
+            }
+            return allocations.getAsJsonArray();
+        } catch (IOException e) {
+            throw new JsonParseException("Unable to read the allocations response.", e);
+        }
+    }
+}
@@ -1,16 +1,32 @@
 package ai.evolv;
 
 import com.google.gson.JsonArray;
-import com.google.gson.JsonParser;
 
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-
+/**
+ * Fetches a client's allocations and tracks the client's state.
+ * <p>
+ *     The state, the allocation status along with the subscriptions, the
+ *     confirmation and the contamination requested while the allocations
+ *     are fetched, is an immutable snapshot that is swapped atomically.
+ *     Readers never lock and a request made while the allocations are
+ *     fetched is either recorded in the snapshot that the fetch resolves or
+ *     sees the resolved status, it is never lost.
+ * </p>
+ */
 class Allocator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Allocator.class);
@@ -25,11 +41,7 @@ class Allocator {
     private final AscendParticipant participant;
     private final EventEmitter eventEmitter;
     private final HttpClient httpClient;
-
-    private boolean confirmationSandbagged = false;
-    private boolean contaminationSandbagged = false;
-
-    private AllocationStatus allocationStatus;
+    private final AtomicReference<State> state = new AtomicReference<>(State.FETCHING);
 
     Allocator(AscendConfig config, AscendParticipant participant) {
         this.executionQueue = config.getExecutionQueue();
@@ -37,21 +49,93 @@ class Allocator {
         this.config = config;
         this.participant = participant;
         this.httpClient = config.getHttpClient();
-        this.allocationStatus = AllocationStatus.FETCHING;
         this.eventEmitter = new EventEmitter(config, participant, this.store);
 
     }
 
     AllocationStatus getAllocationStatus() {
-        return allocationStatus;
+        return state.get().status;
+    }
+
+    /**
+     * Confirms the allocations once they have been fetched.
+     * @return true if the confirmation will be sent once the allocations have
+     *         been fetched, false if they are no longer being fetched
+     */
+    boolean sandBagConfirmation() {
+        return defer(State::withConfirmation);
+    }
+
+    /**
+     * Contaminates the allocations once they have been fetched.
+     * @return true if the contamination will be sent once the allocations
+     *         have been fetched, false if they are no longer being fetched
+     */
+    boolean sandBagContamination() {
+        return defer(State::withContamination);
+    }
+
+    /**
+     * Applies a subscription once the allocations have been fetched.
+     * @param execution the subscription
+     * @return true if the subscription will be applied once the allocations
+     *         have been fetched, false if they are no longer being fetched
+     */
+    boolean enqueue(Execution<?> execution) {
+        return defer(current -> current.withExecution(execution));
+    }
+
+    private boolean defer(UnaryOperator<State> change) {
+        State current;
+        do {
+            current = state.get();
+            if (current.status != AllocationStatus.FETCHING) {
+                return false;
+            }
+        } while (!state.compareAndSet(current, change.apply(current)));
+        return true;
     }
 
-    void sandBagConfirmation() {
-        confirmationSandbagged = true;
+    /**
+     * Moves the state out of FETCHING.
+     * <p>
+     *     The requests recorded while fetching are taken and handled before the
+     *     resolved status is published, so a caller that sees the resolved
+     *     status knows that the subscriptions before it have been applied.
+     *     Requests recorded while they are handled are taken in another round.
+     *     The handler is not called when no requests were recorded.
+     * </p>
+     * @param resolved the resolved state
+     * @param pendingRequests handles the requests recorded while fetching
+     */
+    private void resolve(State resolved, Consumer<State> pendingRequests) {
+        State pending = takePending();
+        while (pending != null) {
+            try {
+                if (pending.hasRequests()) {
+                    pendingRequests.accept(pending);
+                }
+            } catch (RuntimeException e) {
+                // the status is still published, later requests are applied right away
+                LOGGER.error("There was an error applying the requests made while the "
+                        + "allocations were fetched.", e);
+            }
+            if (state.compareAndSet(State.FETCHING, resolved)) {
+                return;
+            }
+            pending = takePending();
+        }
     }
 
-    void sandBagContamination() {
-        contaminationSandbagged = true;
+    private State takePending() {
+        State current;
+        do {
+            current = state.get();
+            if (current.status != AllocationStatus.FETCHING) {
+                return null;
+            }
+        } while (!state.compareAndSet(current, State.FETCHING));
+        return current;
     }
 
     String createAllocationsUrl() {
@@ -71,24 +155,23 @@ class Allocator {
         }
     }
 
-    CompletableFuture<JsonArray> fetchAllocations() {
-        CompletableFuture<String> responseFuture = httpClient.get(createAllocationsUrl());
-
-        return responseFuture.thenApply(responseBody -> {
-            JsonParser parser = new JsonParser();
-            JsonArray allocations = parser.parse(responseBody).getAsJsonArray();
-
-            JsonArray previousAllocations = store.get(participant.getUserId());
-            if (allocationsNotEmpty(previousAllocations)) {
-                allocations = Allocations.reconcileAllocations(previousAllocations, allocations);
+    private CompletableFuture<JsonArray> requestAllocations() {
+        AscendMetrics metrics = config.getMetrics();
+        long start = metrics.startTimer();
+        CompletableFuture<JsonArray> allocations = httpClient.getBytes(createAllocationsUrl())
+                .thenApply(AllocationsDecoder::decode);
+        allocations.whenComplete((decoded, e) -> {
+            metrics.stopTimer(AscendMetrics.Timer.ALLOCATION_FETCH, start);
+            if (e != null) {
+                metrics.increment(AscendMetrics.Counter.FETCH_FAILURE);
             }
+        });
+        return allocations;
+    }
 
-            store.put(participant.getUserId(), allocations);
-            allocationStatus = AllocationStatus.RETRIEVED;
-
-            executionQueue.executeAllWithValuesFromAllocations(allocations,
-                eventEmitter, confirmationSandbagged, contaminationSandbagged);
-
+    CompletableFuture<JsonArray> fetchAllocations() {
+        return fetchAndStoreAllocations().thenApply(allocations -> {
+            resolveWithAllocations(allocations);
             return allocations;
         }).exceptionally(e -> {
             LOGGER.error("There was an exception while retrieving allocations.", e);
@@ -96,24 +179,148 @@ class Allocator {
         });
     }
 
+    /**
+     * Serves the participant's stored allocations without fetching them.
+     * @param allocations the participant's stored allocations
+     * @return the stored allocations
+     */
+    CompletableFuture<JsonArray> useStoredAllocations(JsonArray allocations) {
+        if (!state.compareAndSet(State.FETCHING, State.RETRIEVED)) {
+            // requests were made before the stored allocations were used
+            resolveWithAllocations(allocations);
+        }
+        return CompletableFuture.completedFuture(allocations);
+    }
+
+    /**
+     * Fetches the participant's allocations in the background and stores them
+     * for later clients. The stored allocations are kept if the fetch fails.
+     * @return the refreshed allocations
+     */
+    CompletableFuture<JsonArray> refreshAllocations() {
+        return fetchAndStoreAllocations().exceptionally(e -> {
+            LOGGER.warn("There was an exception while refreshing allocations, the stored " +
+                    "allocations will be kept.", e);
+            return store.get(participant.getUserId());
+        });
+    }
+
+    /**
+     * Fetches and stores the participant's allocations ahead of any client,
+     * without applying them to subscriptions.
+     * @return the stored allocations
+     */
+    CompletableFuture<JsonArray> prefetchAllocations() {
+        return fetchAndStoreAllocations();
+    }
+
+    private CompletableFuture<JsonArray> fetchAndStoreAllocations() {
+        // the shared request reconciles and stores the allocations once, every
+        // client joining it reads the same stored allocations
+        Supplier<CompletableFuture<JsonArray>> storedAllocations = () ->
+                requestAllocations().thenApply(this::storeAllocations);
+        return config.getInFlightAllocations().fetch(config.getEnvironmentId(),
+                participant.getUserId(), participant.getSessionId(), storedAllocations);
+    }
+
+    private JsonArray storeAllocations(JsonArray fetched) {
+        JsonArray allocations = fetched;
+
+        JsonArray previousAllocations = store.get(participant.getUserId());
+        if (allocationsNotEmpty(previousAllocations)) {
+            allocations = Allocations.reconcileAllocations(previousAllocations, allocations);
+        }
+
+        if (config.getAllocationFreshness() > 0) {
+            allocations = Allocations.markFetched(allocations, System.currentTimeMillis());
+        }
+
+        store.put(participant.getUserId(), allocations);
+        return allocations;
+    }
+
     JsonArray resolveAllocationFailure() {
+        config.getMetrics().increment(AscendMetrics.Counter.FALLBACK);
         JsonArray previousAllocations = store.get(participant.getUserId());
         if (allocationsNotEmpty(previousAllocations)) {
             LOGGER.debug("Falling back to participant's previous allocation.");
-            allocationStatus = AllocationStatus.RETRIEVED;
-            executionQueue.executeAllWithValuesFromAllocations(previousAllocations,
-                    eventEmitter, confirmationSandbagged, contaminationSandbagged);
+            resolveWithAllocations(previousAllocations);
         } else {
             LOGGER.debug("Falling back to the supplied defaults.");
-            allocationStatus = AllocationStatus.FAILED;
-            executionQueue.executeAllWithValuesFromDefaults();
+            resolve(State.FAILED, pending ->
+                    executionQueue.executeAllWithValuesFromDefaults(pending.executions));
             previousAllocations = new JsonArray();
         }
 
         return previousAllocations;
     }
 
+    private void resolveWithAllocations(JsonArray allocations) {
+        // parsed only when requests were made while fetching, a client parses
+        // the allocations itself when it first retrieves a value
+        AtomicReference<AllocationSet> allocationSet = new AtomicReference<>();
+        resolve(State.RETRIEVED, pending -> {
+            if (allocationSet.get() == null) {
+                allocationSet.set(parse(allocations));
+            }
+            executionQueue.executeAllWithValuesFromAllocations(pending.executions,
+                    allocationSet.get(), eventEmitter, pending.confirmationSandbagged,
+                    pending.contaminationSandbagged);
+        });
+    }
+
+    private AllocationSet parse(JsonArray allocations) {
+        return AllocationSet.parse(allocations,
+                config.getParticipantFlags(participant.getUserId()), config.getMetrics());
+    }
+
     static boolean allocationsNotEmpty(JsonArray allocations) {
         return allocations != null && allocations.size() > 0;
     }
+
+    /**
+     * An immutable snapshot of the client's state.
+     */
+    private static final class State {
+
+        static final State FETCHING = new State(AllocationStatus.FETCHING,
+                Collections.emptyList(), false, false);
+        static final State RETRIEVED = new State(AllocationStatus.RETRIEVED,
+                Collections.emptyList(), false, false);
+        static final State FAILED = new State(AllocationStatus.FAILED,
+                Collections.emptyList(), false, false);
+
+        private final AllocationStatus status;
+        private final List<Execution<?>> executions;
+        private final boolean confirmationSandbagged;
+        private final boolean contaminationSandbagged;
+
+        private State(AllocationStatus status, List<Execution<?>> executions,
+                      boolean confirmationSandbagged, boolean contaminationSandbagged) {
+            this.status = status;
+            this.executions = executions;
+            this.confirmationSandbagged = confirmationSandbagged;
+            this.contaminationSandbagged = contaminationSandbagged;
+        }
+
+        State withExecution(Execution<?> execution) {
+            List<Execution<?>> appended = new ArrayList<>(executions.size() + 1);
+            appended.addAll(executions);
+            appended.add(execution);
+            return new State(status, Collections.unmodifiableList(appended),
+                    confirmationSandbagged, contaminationSandbagged);
+        }
+
+        boolean hasRequests() {
+            return !executions.isEmpty() || confirmationSandbagged || contaminationSandbagged;
+        }
+
+        State withConfirmation() {
+            return new State(status, executions, true, contaminationSandbagged);
+        }
+
+        State withContamination() {
+            return new State(status, executions, confirmationSandbagged, true);
+        }
+    }
 }
@@ -2,6 +2,8 @@ package ai.evolv;
 
 import com.google.gson.JsonArray;
 
+import java.util.concurrent.TimeUnit;
+
 public interface AscendAllocationStore {
 
     /**
@@ -25,4 +27,47 @@ public interface AscendAllocationStore {
      */
     void put(String uid, JsonArray allocations);
 
+    /**
+     * Stores a flag of one of the participant's allocations.
+     * <p>
+     *     Flags are only ever set, once an allocation has been touched, confirmed
+     *     or contaminated it stays that way. The default implementation sets the
+     *     flag on a copy of the stored allocations and stores the copy, it does
+     *     nothing when the participant has no stored allocations. Stores
+     *     that can keep a flag on its own should override it, so that setting a
+     *     flag does not rewrite the participant's allocations, as the bundled
+     *     stores do.
+     * </p>
+     * @param uid the participant's unique id
+     * @param experimentId the experiment of the allocation
+     * @param flag the flag to set, one of "touched", "confirmed" or "contaminated"
+     */
+    default void putFlag(String uid, String experimentId, String flag) {
+        JsonArray stored = get(uid);
+        if (!Allocator.allocationsNotEmpty(stored)) {
+            return;
+        }
+
+        JsonArray allocations = stored.deepCopy();
+        if (Allocations.setFlag(allocations, experimentId, flag)) {
+            put(uid, allocations);
+        }
+    }
+
+    /**
+     * Writes what the store buffers before the application exits.
+     * <p>
+     *     Called by {@link AscendConfig#shutdown(long, TimeUnit)}. Stores that
+     *     write in the background, such as {@link WriteBehindAllocationStore},
+     *     write their pending allocations, stores that wrap another store pass
+     *     the call on. The default implementation has nothing to write.
+     * </p>
+     * @param timeout how long to wait for the buffered allocations to be written
+     * @param unit the unit of the timeout
+     * @return true if everything buffered was written before the timeout
+     */
+    default boolean shutdown(long timeout, TimeUnit unit) {
+        return true;
+    }
+
 }
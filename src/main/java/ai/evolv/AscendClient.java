@@ -1,5 +1,11 @@
 package ai.evolv;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 public interface AscendClient {
 
     /**
@@ -19,6 +25,81 @@ public interface AscendClient {
      */
     <T> T get(String key, T defaultValue);
 
+    /**
+     * Retrieves a value from the participant's allocation, returns a default upon error
+     * or once the timeout elapses.
+     * <p>
+     *     Behaves like {@link #get(String, Object)} but waits at most the given amount
+     *     of time for the allocation to become available. If the allocation is not
+     *     available in time the default value is returned. The default implementation
+     *     can not bound the wait without another thread, it waits like
+     *     {@link #get(String, Object)}. Implementations that can wait for the
+     *     allocation with a timeout should override it, as the SDK's client does.
+     * </p>
+     * @param key a unique key identifying a specific value in the participants
+     *           allocation
+     * @param defaultValue a default value to return upon error
+     * @param timeout the maximum time to wait for the allocation
+     * @param unit the time unit of the timeout
+     * @param <T> type of value to be returned
+     * @return a value associated with the given key
+     */
+    default <T> T get(String key, T defaultValue, long timeout, TimeUnit unit) {
+        return get(key, defaultValue);
+    }
+
+    /**
+     * Retrieves a value from the participant's allocation without blocking.
+     * <p>
+     *     The returned future is completed with the key's associated value once the
+     *     allocation is available. If the allocation call times out or fails, or the
+     *     value cannot be retrieved, the future is completed with the default value.
+     *     The future is never completed exceptionally.
+     * </p>
+     * <p>
+     *     The default implementation is only a fallback for implementations
+     *     written before this method existed. It calls the blocking
+     *     {@link #get(String, Object)} on the common fork join pool, which holds
+     *     a pool thread for every pending call. Implementations should override
+     *     it to complete the future from the allocation request itself, as the
+     *     SDK's client does.
+     * </p>
+     * @param key a unique key identifying a specific value in the participants
+     *           allocation
+     * @param defaultValue a default value to complete with upon error
+     * @param <T> type of value to be returned
+     * @return a future of the value associated with the given key
+     */
+    default <T> CompletableFuture<T> getAsync(String key, T defaultValue) {
+        return CompletableFuture.supplyAsync(() -> get(key, defaultValue))
+                .exceptionally(e -> defaultValue);
+    }
+
+    /**
+     * Retrieves several values from the participant's allocation at once, using the
+     * defaults upon error.
+     * <p>
+     *     Resolves every key in a single pass over the allocation. Each key's value has
+     *     the type of its default value, and any key that cannot be retrieved maps to
+     *     its default value. This method is blocking, it will wait till the allocation
+     *     is available and then return. The default implementation calls
+     *     {@link #get(String, Object)} for each key.
+     * </p>
+     * @param keysWithDefaults unique keys identifying specific values in the participants
+     *                         allocation, each mapped to a default value to return upon
+     *                         error
+     * @return the values associated with the given keys
+     */
+    default Map<String, Object> getAll(Map<String, Object> keysWithDefaults) {
+        Map<String, Object> values = new LinkedHashMap<>(keysWithDefaults);
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            if (value.getValue() != null) {
+                value.setValue(get(value.getKey(), value.getValue()));
+            }
+        }
+        return values;
+    }
+
     /**
      * Retrieves a value from Ascend asynchronously and applies some custom action.
      * <p>
@@ -36,6 +117,31 @@ public interface AscendClient {
      */
     <T> void subscribe(String key, T defaultValue, AscendAction<T> function);
 
+    /**
+     * Retrieves a value from Ascend asynchronously and applies some custom action
+     * on the given executor.
+     * <p>
+     *     Behaves like {@link #subscribe(String, Object, AscendAction)} but every
+     *     invocation of the action is dispatched to the given executor instead of
+     *     the executor set on the configuration, if any. The values are applied one
+     *     at a time and in order. The default implementation subscribes an action
+     *     that hands each value to the executor.
+     * </p>
+     * @param key a unique key identifying a specific value in the participants
+     *            allocation
+     * @param defaultValue a default value to return upon error
+     * @param function a handler that is invoked when the allocation is updated
+     * @param executor the executor that invokes the handler
+     * @param <T> type of value to be returned
+     */
+    default <T> void subscribe(String key, T defaultValue, AscendAction<T> function,
+                               Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor can not be null.");
+        }
+        subscribe(key, defaultValue, new SerialAction<>(key, function, executor));
+    }
+
     /**
      * Emits a generic event to be recorded by Ascend.
      * <p>
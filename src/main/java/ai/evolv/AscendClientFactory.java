@@ -2,7 +2,9 @@ package ai.evolv;
 
 import com.google.gson.JsonArray;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +13,8 @@ public class AscendClientFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AscendClientFactory.class);
 
+    private static final int DEFAULT_PREWARM_CONCURRENCY = 16;
+
     /**
      * Creates instances of the AscendClient.
      *
@@ -39,6 +43,48 @@ public class AscendClientFactory {
         return AscendClientFactory.createClient(config, participant);
     }
 
+    /**
+     * Fetches and stores the allocations of participants ahead of their clients.
+     * <p>
+     *     At most 16 requests are in flight at once. See
+     *     {@link #prewarm(AscendConfig, Collection, int)}.
+     * </p>
+     *
+     * @param config general configurations for the SDK
+     * @param participants the participants whose clients will be initialized
+     * @return a future of the outcome of every participant
+     */
+    public static CompletableFuture<PrewarmResult> prewarm(AscendConfig config,
+            Collection<AscendParticipant> participants) {
+        return prewarm(config, participants, DEFAULT_PREWARM_CONCURRENCY);
+    }
+
+    /**
+     * Fetches and stores the allocations of participants ahead of their clients.
+     * <p>
+     *     The allocations are fetched in parallel, with at most maxConcurrency
+     *     requests in flight, and written to the config's allocation store.
+     *     Participants whose stored allocations are still fresh are skipped.
+     *     Clients initialized afterwards serve the stored allocations without a
+     *     request as long as they are fresh, which requires
+     *     {@link AscendConfig.Builder#setAllocationFreshness(long, TimeUnit)}.
+     * </p>
+     * <p>
+     *     The returned future completes once every participant has been
+     *     prewarmed or has failed, it never completes exceptionally.
+     * </p>
+     *
+     * @param config general configurations for the SDK
+     * @param participants the participants whose clients will be initialized
+     * @param maxConcurrency the largest number of requests in flight
+     * @return a future of the outcome of every participant
+     */
+    public static CompletableFuture<PrewarmResult> prewarm(AscendConfig config,
+            Collection<AscendParticipant> participants, int maxConcurrency) {
+        LOGGER.debug("Prewarming the allocations of {} participants.", participants.size());
+        return AllocationPrewarmer.prewarm(config, participants, maxConcurrency);
+    }
+
     private static AscendClient createClient(AscendConfig config, AscendParticipant participant) {
         AscendAllocationStore store = config.getAscendAllocationStore();
         JsonArray previousAllocations = store.get(participant.getUserId());
@@ -49,8 +95,23 @@ public class AscendClientFactory {
 
         Allocator allocator = new Allocator(config, participant);
 
-        // fetch and reconcile allocations asynchronously
-        CompletableFuture<JsonArray> futureAllocations = allocator.fetchAllocations();
+        CompletableFuture<JsonArray> futureAllocations;
+        long fetchedAt = reconciliationNeeded ? Allocations.getFetchedAt(previousAllocations) : -1;
+        if (config.getAllocationFreshness() > 0 && fetchedAt >= 0) {
+            // serve the stored allocations, the stored allocations are already reconciled
+            futureAllocations = allocator.useStoredAllocations(previousAllocations);
+            reconciliationNeeded = false;
+            config.getMetrics().increment(AscendMetrics.Counter.CACHE_HIT);
+
+            if (System.currentTimeMillis() - fetchedAt >= config.getAllocationFreshness()) {
+                LOGGER.debug("Serving stale allocations while they are refreshed.");
+                allocator.refreshAllocations();
+            }
+        } else {
+            // fetch and reconcile allocations asynchronously
+            futureAllocations = allocator.fetchAllocations();
+            config.getMetrics().increment(AscendMetrics.Counter.CACHE_MISS);
+        }
 
         return new AscendClientImpl(config,
                 new EventEmitter(config, participant, store),
@@ -1,11 +1,14 @@
 package ai.evolv;
 
-import ai.evolv.exceptions.AscendKeyError;
-import ai.evolv.generics.GenericClass;
-
 import com.google.gson.JsonArray;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,11 +18,15 @@ class AscendClientImpl implements AscendClient {
 
     private final EventEmitter eventEmitter;
     private final CompletableFuture<JsonArray> futureAllocations;
-    private final ExecutionQueue executionQueue;
     private final Allocator allocator;
     private final AscendAllocationStore store;
     private final boolean previousAllocations;
     private final AscendParticipant participant;
+    private final ParticipantFlags flags;
+    private final AscendMetrics metrics;
+    private final Executor callbackExecutor;
+
+    private volatile AllocationSet allocationSet;
 
     AscendClientImpl(AscendConfig config,
                      EventEmitter emitter,
@@ -28,12 +35,14 @@ class AscendClientImpl implements AscendClient {
                      boolean previousAllocations,
                      AscendParticipant participant) {
         this.store = config.getAscendAllocationStore();
-        this.executionQueue = config.getExecutionQueue();
         this.eventEmitter = emitter;
         this.futureAllocations = futureAllocations;
         this.allocator = allocator;
         this.previousAllocations = previousAllocations;
         this.participant = participant;
+        this.flags = config.getParticipantFlags(participant.getUserId());
+        this.metrics = config.getMetrics();
+        this.callbackExecutor = config.getCallbackExecutor();
     }
 
     @Override
@@ -45,59 +54,143 @@ class AscendClientImpl implements AscendClient {
 
             // this is blocking
             JsonArray allocations = futureAllocations.get();
-            if (!Allocator.allocationsNotEmpty(allocations)) {
+            return getValueOrDefault(key, defaultValue, allocations);
+        } catch (Exception e) {
+            LOGGER.error("An error occurred while retrieving the treatment. Returning " +
+                    "the default.", e);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public <T> T get(String key, T defaultValue, long timeout, TimeUnit unit) {
+        try {
+            if (futureAllocations == null) {
                 return defaultValue;
             }
 
-            GenericClass<T> cls = new GenericClass(defaultValue.getClass());
-            T value = new Allocations(allocations, store).getValueFromAllocations(key,
-                    cls.getMyType(), participant);
+            JsonArray allocations = futureAllocations.get(timeout, unit);
+            return getValueOrDefault(key, defaultValue, allocations);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Timed out while waiting for the allocation. Returning " +
+                    "the default.");
+            return defaultValue;
+        } catch (Exception e) {
+            LOGGER.error("An error occurred while retrieving the treatment. Returning " +
+                    "the default.", e);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, T defaultValue) {
+        if (futureAllocations == null) {
+            return CompletableFuture.completedFuture(defaultValue);
+        }
 
-            if (value == null) {
-                throw new AscendKeyError("Got null when retrieving key " +
-                        "from allocations.");
+        return futureAllocations.handle((allocations, e) -> {
+            if (e != null) {
+                LOGGER.error("An error occurred while retrieving the treatment. Returning " +
+                        "the default.", e);
+                return defaultValue;
             }
+            return getValueOrDefault(key, defaultValue, allocations);
+        });
+    }
 
-            return value;
-        } catch (AscendKeyError e) {
-            LOGGER.debug("Unable to retrieve the treatment. Returning " +
-                    "the default.", e);
-            return defaultValue;
+    @Override
+    public Map<String, Object> getAll(Map<String, Object> keysWithDefaults) {
+        Map<String, Object> values = new LinkedHashMap<>(keysWithDefaults);
+        try {
+            if (futureAllocations == null) {
+                return values;
+            }
+
+            // this is blocking
+            JsonArray allocations = futureAllocations.get();
+            if (!Allocator.allocationsNotEmpty(allocations)) {
+                return values;
+            }
+
+            long start = metrics.startTimer();
+            values.putAll(new Allocations(parse(allocations), store)
+                    .getValuesFromAllocations(keysWithDefaults, participant));
+            metrics.stopTimer(AscendMetrics.Timer.GET, start);
+        } catch (Exception e) {
+            LOGGER.error("An error occurred while retrieving the treatments. Returning " +
+                    "the defaults.", e);
+        }
+        return values;
+    }
+
+    private <T> T getValueOrDefault(String key, T defaultValue, JsonArray allocations) {
+        long start = metrics.startTimer();
+        try {
+            if (!Allocator.allocationsNotEmpty(allocations)) {
+                return defaultValue;
+            }
+
+            @SuppressWarnings("unchecked")
+            Class<T> cls = (Class<T>) defaultValue.getClass();
+            Optional<T> value = new Allocations(parse(allocations), store).lookupValue(key,
+                    cls, participant);
+            if (!value.isPresent()) {
+                LOGGER.debug("There was no value for {} in the allocation. Returning the "
+                        + "default.", key);
+                return defaultValue;
+            }
+
+            return value.get();
         } catch (Exception e) {
             LOGGER.error("An error occurred while retrieving the treatment. Returning " +
                     "the default.", e);
             return defaultValue;
+        } finally {
+            metrics.stopTimer(AscendMetrics.Timer.GET, start);
         }
     }
 
     @Override
     public <T> void subscribe(String key, T defaultValue, AscendAction<T> function) {
-        Execution execution = new Execution<>(key, defaultValue, function, participant, store);
+        subscribe(new Execution<>(key, defaultValue, function, participant, store,
+                callbackExecutor));
+    }
+
+    @Override
+    public <T> void subscribe(String key, T defaultValue, AscendAction<T> function,
+                              Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor can not be null.");
+        }
+        subscribe(new Execution<>(key, defaultValue, function, participant, store, executor));
+    }
+
+    private void subscribe(Execution<?> execution) {
         if (previousAllocations) {
             try {
                 JsonArray allocations = store.get(participant.getUserId());
-                execution.executeWithAllocation(allocations);
-            } catch (AscendKeyError e) {
-                LOGGER.debug("Unable to retrieve the value of %s from the allocation.",
-                        execution.getKey());
-                execution.executeWithDefault();
+                if (!execution.executeWithAllocation(parse(allocations))) {
+                    LOGGER.debug("Unable to retrieve the value of {} from the allocation.",
+                            execution.getKey());
+                    execution.executeWithDefault();
+                }
             } catch (Exception e) {
                 LOGGER.error("There was an error when applying the stored treatment.", e);
             }
         }
 
-        Allocator.AllocationStatus allocationStatus = allocator.getAllocationStatus();
-        if (allocationStatus == Allocator.AllocationStatus.FETCHING) {
-            executionQueue.enqueue(execution);
+        if (allocator.enqueue(execution)) {
             return;
-        } else if (allocationStatus == Allocator.AllocationStatus.RETRIEVED) {
+        }
+
+        if (allocator.getAllocationStatus() == Allocator.AllocationStatus.RETRIEVED) {
             try {
                 JsonArray allocations = store.get(participant.getUserId());
-                execution.executeWithAllocation(allocations);
-                return;
-            } catch (AscendKeyError e) {
-                LOGGER.debug(String.format("Unable to retrieve" +
-                        " the value of %s from the allocation.",  execution.getKey()), e);
+                if (execution.executeWithAllocation(parse(allocations))) {
+                    return;
+                }
+                LOGGER.debug("Unable to retrieve the value of {} from the allocation.",
+                        execution.getKey());
             } catch (Exception e) {
                 LOGGER.error("There was an error applying the subscribed method.", e);
             }
@@ -118,21 +211,36 @@ class AscendClientImpl implements AscendClient {
 
     @Override
     public void confirm() {
-        Allocator.AllocationStatus allocationStatus = allocator.getAllocationStatus();
-        if (allocationStatus == Allocator.AllocationStatus.FETCHING) {
-            allocator.sandBagConfirmation();
-        } else if (allocationStatus == Allocator.AllocationStatus.RETRIEVED) {
-            eventEmitter.confirm(store.get(participant.getUserId()));
+        if (allocator.sandBagConfirmation()) {
+            return;
+        }
+
+        if (allocator.getAllocationStatus() == Allocator.AllocationStatus.RETRIEVED) {
+            eventEmitter.confirm(parse(store.get(participant.getUserId())));
         }
     }
 
     @Override
     public void contaminate() {
-        Allocator.AllocationStatus allocationStatus = allocator.getAllocationStatus();
-        if (allocationStatus == Allocator.AllocationStatus.FETCHING) {
-            allocator.sandBagContamination();
-        } else if (allocationStatus == Allocator.AllocationStatus.RETRIEVED) {
-            eventEmitter.contaminate(store.get(participant.getUserId()));
+        if (allocator.sandBagContamination()) {
+            return;
+        }
+
+        if (allocator.getAllocationStatus() == Allocator.AllocationStatus.RETRIEVED) {
+            eventEmitter.contaminate(parse(store.get(participant.getUserId())));
+        }
+    }
+
+    /**
+     * Parses the allocations, reusing the last parsed set while the
+     * allocations have not been replaced.
+     */
+    private AllocationSet parse(JsonArray allocations) {
+        AllocationSet parsed = allocationSet;
+        if (parsed == null || parsed.getSource() != allocations) {
+            parsed = AllocationSet.parse(allocations, flags, metrics);
+            allocationSet = parsed;
         }
+        return parsed;
     }
 }
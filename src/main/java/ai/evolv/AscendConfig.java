@@ -1,5 +1,8 @@
 package ai.evolv;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 public class AscendConfig {
 
     static final String DEFAULT_HTTP_SCHEME = "https";
@@ -7,6 +10,8 @@ public class AscendConfig {
     static final String DEFAULT_API_VERSION = "v1";
 
     private static final int DEFAULT_ALLOCATION_STORE_SIZE = 1000;
+    private static final long DEFAULT_ALLOCATION_FRESHNESS = 0;
+    private static final int DEFAULT_EVENT_BUFFER_SIZE = 10000;
 
     private final String httpScheme;
     private final String domain;
@@ -15,13 +20,23 @@ public class AscendConfig {
     private final AscendAllocationStore ascendAllocationStore;
     private final AscendParticipant participant;
     private final HttpClient httpClient;
+    private final long allocationFreshness;
     private final ExecutionQueue executionQueue;
+    private final InFlightAllocations inFlightAllocations;
+    private final EventDispatcher eventDispatcher;
+    private final ParticipantFlags.Registry participantFlags;
+    private final AscendMetrics metrics;
+    private final Executor callbackExecutor;
 
     private AscendConfig(String httpScheme, String domain, String version,
                          String environmentId,
                          AscendAllocationStore ascendAllocationStore,
                          AscendParticipant participant,
-                         HttpClient httpClient) {
+                         HttpClient httpClient,
+                         long allocationFreshness,
+                         EventDispatcher eventDispatcher,
+                         AscendMetrics metrics,
+                         Executor callbackExecutor) {
         this.httpScheme = httpScheme;
         this.domain = domain;
         this.version = version;
@@ -29,7 +44,13 @@ public class AscendConfig {
         this.ascendAllocationStore = ascendAllocationStore;
         this.participant = participant;
         this.httpClient = httpClient;
+        this.allocationFreshness = allocationFreshness;
         this.executionQueue = new ExecutionQueue();
+        this.inFlightAllocations = new InFlightAllocations();
+        this.eventDispatcher = eventDispatcher;
+        this.participantFlags = new ParticipantFlags.Registry();
+        this.metrics = metrics;
+        this.callbackExecutor = callbackExecutor;
     }
 
     public static Builder builder(String environmentId, HttpClient httpClient) {
@@ -64,18 +85,85 @@ public class AscendConfig {
         return this.httpClient;
     }
 
+    long getAllocationFreshness() {
+        return this.allocationFreshness;
+    }
+
     ExecutionQueue getExecutionQueue() {
         return this.executionQueue;
     }
 
+    InFlightAllocations getInFlightAllocations() {
+        return this.inFlightAllocations;
+    }
+
+    EventDispatcher getEventDispatcher() {
+        return this.eventDispatcher;
+    }
+
+    AscendMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Returns the executor that applies subscribed actions.
+     * @return the executor, null if actions are applied on the thread that
+     *         resolves the allocations
+     */
+    Executor getCallbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    /**
+     * Returns the allocation flags shared by every client of the participant.
+     * The flags of a participant without a live client are forgotten and
+     * merged again from the allocation store when they are next needed.
+     * @param uid the participant's unique id
+     * @return the participant's flags
+     */
+    ParticipantFlags getParticipantFlags(String uid) {
+        return participantFlags.get(uid);
+    }
+
+    /**
+     * Sends the buffered events and writes the buffered allocations.
+     * <p>
+     *     Only needed when event batching or allocation write behind is enabled.
+     *     Events emitted after the shutdown are dropped, allocations stored after
+     *     it are written right away.
+     * </p>
+     * @param timeout how long to wait for the buffered events to be sent and
+     *                the buffered allocations to be written
+     * @param unit the unit of the timeout
+     * @return true if everything buffered was sent and written before the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        boolean completed = true;
+        if (eventDispatcher != null) {
+            completed = eventDispatcher.shutdown(timeout, unit);
+        }
+        completed &= ascendAllocationStore.shutdown(timeout, unit);
+        return completed;
+    }
+
     public static class Builder {
 
         private int allocationStoreSize = DEFAULT_ALLOCATION_STORE_SIZE;
+        private long allocationFreshness = DEFAULT_ALLOCATION_FRESHNESS;
+        private int eventBufferSize = DEFAULT_EVENT_BUFFER_SIZE;
+        private int eventBatchSize;
+        private long eventFlushInterval;
+        private TimeUnit eventFlushIntervalUnit;
+        private int writeBehindBatchSize;
+        private long writeBehindMaxStaleness;
+        private TimeUnit writeBehindMaxStalenessUnit;
         private String httpScheme = DEFAULT_HTTP_SCHEME;
         private String domain = DEFAULT_DOMAIN;
         private String version = DEFAULT_API_VERSION;
         private AscendAllocationStore allocationStore;
         private AscendParticipant participant;
+        private AscendMetrics metrics = NoopMetrics.INSTANCE;
+        private Executor callbackExecutor;
 
         private String environmentId;
         private HttpClient httpClient;
@@ -159,6 +247,131 @@ public class AscendConfig {
             return this;
         }
 
+        /**
+         * Sets how long stored allocations are served without a new fetch.
+         * <p>
+         *     Within the window a new client is served entirely from the allocation
+         *     store. Once the window has passed, the stored allocations are still
+         *     served right away while they are refreshed in the background. A
+         *     window of zero, the default, fetches allocations for every client.
+         * </p>
+         * @param duration how long stored allocations stay fresh
+         * @param unit the unit of the duration
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationFreshness(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("The allocation freshness can not be "
+                        + "negative.");
+            }
+            this.allocationFreshness = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Sends events from a background thread in batches instead of one by one
+         * on the calling thread.
+         * <p>
+         *     A batch is sent once it holds batchSize events or once the flush
+         *     interval has passed since its first event. Call
+         *     {@link AscendConfig#shutdown(long, TimeUnit)} before the application
+         *     exits to send the events that are still buffered.
+         * </p>
+         * @param batchSize the number of events after which a batch is sent
+         * @param flushInterval the longest time an event waits to be sent
+         * @param unit the unit of the flush interval
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventBatching(int batchSize, long flushInterval, TimeUnit unit) {
+            if (batchSize <= 0 || flushInterval < 0) {
+                throw new IllegalArgumentException("The event batch size must be positive and "
+                        + "the flush interval can not be negative.");
+            }
+            this.eventBatchSize = batchSize;
+            this.eventFlushInterval = flushInterval;
+            this.eventFlushIntervalUnit = unit;
+            return this;
+        }
+
+        /**
+         * Sets how many events are buffered while event batching is enabled.
+         * Events emitted while the buffer is full are dropped.
+         * @param size the number of events the buffer holds
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventBufferSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("The event buffer size must be positive.");
+            }
+            this.eventBufferSize = size;
+            return this;
+        }
+
+        /**
+         * Writes allocations to the allocation store from a background thread in
+         * batches instead of on every put.
+         * <p>
+         *     Repeated puts for a participant are coalesced into a single write.
+         *     A batch is written once it holds batchSize participants or once
+         *     maxStaleness has passed. Call
+         *     {@link AscendConfig#shutdown(long, TimeUnit)} before the application
+         *     exits to write the allocations that are still buffered.
+         * </p>
+         * @param batchSize the number of participants after which a batch is written
+         * @param maxStaleness the longest time a put waits to be written
+         * @param unit the unit of maxStaleness
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationWriteBehind(int batchSize, long maxStaleness, TimeUnit unit) {
+            if (batchSize <= 0 || maxStaleness <= 0) {
+                throw new IllegalArgumentException("The write behind batch size and maximum "
+                        + "staleness must be positive.");
+            }
+            this.writeBehindBatchSize = batchSize;
+            this.writeBehindMaxStaleness = maxStaleness;
+            this.writeBehindMaxStalenessUnit = unit;
+            return this;
+        }
+
+        /**
+         * Sets where the SDK reports the timings and counts of what it does.
+         * <p>
+         *     By default nothing is measured. {@link InMemoryMetrics} keeps the
+         *     metrics in memory, other implementations can forward them to a
+         *     metrics library.
+         * </p>
+         * @param metrics the metrics to report to
+         * @return AscendClientBuilder class
+         */
+        public Builder setMetrics(AscendMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("The metrics can not be null.");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the executor that applies the actions of subscriptions.
+         * <p>
+         *     By default an action is applied on the thread that resolves the
+         *     participant's allocations, which is often the HTTP client's I/O
+         *     thread, so a slow action holds up other requests. With an executor
+         *     every action is dispatched to it as its own task, the actions of
+         *     several subscriptions run in parallel when the executor has several
+         *     threads. The executor is not shut down by the SDK.
+         * </p>
+         * @param executor the executor applying subscribed actions
+         * @return AscendClientBuilder class
+         */
+        public Builder setCallbackExecutor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("The callback executor can not be null.");
+            }
+            this.callbackExecutor = executor;
+            return this;
+        }
+
         /**
          * Builds an instance of AscendClientImpl.
          * @return an AscendClientImpl instance
@@ -168,10 +381,30 @@ public class AscendConfig {
                 allocationStore = new DefaultAllocationStore(allocationStoreSize);
             }
 
+            AscendAllocationStore store = allocationStore;
+            if (metrics != NoopMetrics.INSTANCE) {
+                // the write behind store times the writes to the wrapped store
+                store = new InstrumentedAllocationStore(store, metrics);
+            }
+            if (writeBehindBatchSize > 0) {
+                store = new WriteBehindAllocationStore(store, writeBehindBatchSize,
+                        writeBehindMaxStaleness, writeBehindMaxStalenessUnit);
+            }
+
+            EventDispatcher eventDispatcher = null;
+            if (eventBatchSize > 0) {
+                eventDispatcher = new EventDispatcher(httpClient, eventBufferSize, eventBatchSize,
+                        eventFlushInterval, eventFlushIntervalUnit, metrics);
+            }
+
             return new AscendConfig(httpScheme, domain, version, environmentId,
-                    allocationStore,
+                    store,
                     participant,
-                    httpClient);
+                    httpClient,
+                    allocationFreshness,
+                    eventDispatcher,
+                    metrics,
+                    callbackExecutor);
         }
 
     }
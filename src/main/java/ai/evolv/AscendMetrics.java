@@ -0,0 +1,79 @@
+package ai.evolv;
+
+/**
+ * Receives timings and counts of what the SDK does internally.
+ * <p>
+ *     Supply an implementation through
+ *     {@link AscendConfig.Builder#setMetrics(AscendMetrics)} to forward them to
+ *     a metrics library. Methods are called on the SDK's hot paths and from
+ *     many threads at once, implementations must be thread safe and should
+ *     not block. {@link InMemoryMetrics} keeps them in memory.
+ * </p>
+ */
+public interface AscendMetrics {
+
+    /**
+     * The operations whose duration is recorded.
+     */
+    enum Timer {
+        /** A request to the Participant API for a participant's allocations. */
+        ALLOCATION_FETCH,
+        /** Resolving one or several values once the allocations are available. */
+        GET,
+        /** Evaluating the audience queries of a participant's allocations. */
+        AUDIENCE_EVALUATION,
+        /** Reading a participant's allocations from the allocation store. */
+        STORE_GET,
+        /** Writing a participant's allocations or flags to the allocation store. */
+        STORE_PUT
+    }
+
+    /**
+     * The occurrences that are counted.
+     */
+    enum Counter {
+        /** A request to the Participant API that failed. */
+        FETCH_FAILURE,
+        /** A failed fetch that fell back to stored allocations or to defaults. */
+        FALLBACK,
+        /** A client served from stored allocations without waiting for a fetch. */
+        CACHE_HIT,
+        /** A client that had to wait for its allocations to be fetched. */
+        CACHE_MISS,
+        /** An event request that was sent. */
+        EVENT_SENT,
+        /** An event that was dropped or whose request could not be made. */
+        EVENT_DROPPED
+    }
+
+    /**
+     * Records the duration of an operation.
+     * @param timer the operation
+     * @param nanos how long it took in nanoseconds
+     */
+    void record(Timer timer, long nanos);
+
+    /**
+     * Counts an occurrence.
+     * @param counter what occurred
+     */
+    void increment(Counter counter);
+
+    /**
+     * Starts timing an operation.
+     * @return the start of the operation, to be passed to
+     *         {@link #stopTimer(Timer, long)}
+     */
+    default long startTimer() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of an operation started by {@link #startTimer()}.
+     * @param timer the operation
+     * @param start the value returned by startTimer
+     */
+    default void stopTimer(Timer timer, long start) {
+        record(timer, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,54 @@
+package ai.evolv;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A copy of the participant's user attributes taken once per client call.
+ * <p>
+ *     Every lookup made during the call shares the snapshot, so the audience
+ *     verdicts cached for it are found by identity. A snapshot of another call
+ *     is compared by its hash first and only compared entry by entry when the
+ *     hashes match.
+ * </p>
+ */
+final class AttributesSnapshot {
+
+    private final Map<String, String> attributes;
+    private final int hash;
+
+    private AttributesSnapshot(Map<String, String> attributes) {
+        this.attributes = attributes;
+        this.hash = Objects.hashCode(attributes);
+    }
+
+    /**
+     * Takes a snapshot of the user attributes.
+     * @param userAttributes the participant's user attributes, may be null
+     * @return the snapshot
+     */
+    static AttributesSnapshot of(Map<String, String> userAttributes) {
+        return new AttributesSnapshot(userAttributes == null
+                ? null : Collections.unmodifiableMap(new HashMap<>(userAttributes)));
+    }
+
+    /**
+     * Returns the attributes of the snapshot.
+     * @return the attributes, null if the participant has none
+     */
+    Map<String, String> get() {
+        return attributes;
+    }
+
+    /**
+     * Whether both snapshots hold the same attributes.
+     * @param other another snapshot
+     * @return true if the attributes are equal
+     */
+    boolean sameAs(AttributesSnapshot other) {
+        return this == other
+                || (hash == other.hash && Objects.equals(attributes, other.attributes));
+    }
+}
@@ -5,95 +5,216 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 
 public class Audience {
 
+    /**
+     * An audience query compiled into an immutable tree of conditions.
+     */
     @FunctionalInterface
-    interface Function<A, B> {
-        boolean apply(A one, B two);
+    interface Condition {
+        boolean test(Map<String, String> userAttributes);
     }
 
-    private Map<String, Function> operators = createOperatorsMap();
+    static final Condition ALWAYS = userAttributes -> true;
+    static final Condition NEVER = userAttributes -> false;
 
-    private Map<String, Function> createOperatorsMap() {
-        Map<String, Function> operatorsMap = new HashMap<>();
-        operatorsMap.put("exists", (object, a) -> ((Map<String, String>) object)
-                .containsKey(((JsonElement) a).getAsString()));
-        operatorsMap.put("kv_contains", (object, params) -> {
-            String storedValue = ((Map<String, String>) object).get(
-                    ((JsonArray) params).get(0).getAsString());
-            if (storedValue == null) {
-                return false;
-            }
-            return storedValue.contains(((JsonArray) params).get(1).getAsString());
+    private static final Map<String, Function<JsonElement, Condition>> OPERATORS =
+            createOperatorsMap();
+
+    private static Map<String, Function<JsonElement, Condition>> createOperatorsMap() {
+        Map<String, Function<JsonElement, Condition>> operatorsMap = new HashMap<>();
+        operatorsMap.put("exists", value -> new AttributeExists(value.getAsString()));
+        operatorsMap.put("kv_contains", params -> {
+            String attribute = getParam(params, 0);
+            String expected = getParam(params, 1);
+            return new AttributeMatches(attribute, stored -> stored.contains(expected));
         });
-        operatorsMap.put("kv_not_contains", (object, params) -> {
-            String storedValue = ((Map<String, String>) object).get(
-                    ((JsonArray) params).get(0).getAsString());
-            if (storedValue == null) {
-                return false;
-            }
-            return !storedValue.contains(((JsonArray) params).get(1).getAsString());
+        operatorsMap.put("kv_not_contains", params -> {
+            String attribute = getParam(params, 0);
+            String expected = getParam(params, 1);
+            return new AttributeMatches(attribute, stored -> !stored.contains(expected));
         });
-        operatorsMap.put("kv_equal", (object, params) -> {
-            String storedValue = ((Map<String, String>) object).get(
-                    ((JsonArray) params).get(0).getAsString());
-            if (storedValue == null) {
-                return false;
-            }
-            return storedValue.equals(((JsonArray) params).get(1).getAsString());
+        operatorsMap.put("kv_equal", params -> {
+            String attribute = getParam(params, 0);
+            String expected = getParam(params, 1);
+            return new AttributeMatches(attribute, expected::equals);
         });
-        operatorsMap.put("kv_not_equal", (object, params) -> {
-            String storedValue = ((Map<String, String>) object).get(
-                    ((JsonArray) params).get(0).getAsString());
-            if (storedValue == null) {
-                return false;
-            }
-            return !storedValue.equals(((JsonArray) params).get(1).getAsString());
+        operatorsMap.put("kv_not_equal", params -> {
+            String attribute = getParam(params, 0);
+            String expected = getParam(params, 1);
+            return new AttributeMatches(attribute, stored -> !stored.equals(expected));
+        });
+        operatorsMap.put("kv_matches", params -> {
+            String attribute = getParam(params, 0);
+            Pattern pattern = Pattern.compile(getParam(params, 1));
+            return new AttributeMatches(attribute, stored -> pattern.matcher(stored).find());
+        });
+        operatorsMap.put("kv_not_matches", params -> {
+            String attribute = getParam(params, 0);
+            Pattern pattern = Pattern.compile(getParam(params, 1));
+            return new AttributeMatches(attribute, stored -> !pattern.matcher(stored).find());
+        });
+        operatorsMap.put("kv_in", params -> {
+            String attribute = getParam(params, 0);
+            Set<String> expected = getSetParam(params, 1);
+            return new AttributeMatches(attribute, expected::contains);
         });
+        operatorsMap.put("kv_not_in", params -> {
+            String attribute = getParam(params, 0);
+            Set<String> expected = getSetParam(params, 1);
+            return new AttributeMatches(attribute, stored -> !expected.contains(stored));
+        });
+        putNumericOperator(operatorsMap, "kv_greater_than", compared -> compared > 0);
+        putNumericOperator(operatorsMap, "kv_greater_than_equal", compared -> compared >= 0);
+        putNumericOperator(operatorsMap, "kv_less_than", compared -> compared < 0);
+        putNumericOperator(operatorsMap, "kv_less_than_equal", compared -> compared <= 0);
+        putVersionOperator(operatorsMap, "kv_version_equal", compared -> compared == 0);
+        putVersionOperator(operatorsMap, "kv_version_greater_than", compared -> compared > 0);
+        putVersionOperator(operatorsMap,
+                "kv_version_greater_than_equal", compared -> compared >= 0);
+        putVersionOperator(operatorsMap, "kv_version_less_than", compared -> compared < 0);
+        putVersionOperator(operatorsMap, "kv_version_less_than_equal", compared -> compared <= 0);
 
         return operatorsMap;
     }
 
+    private static void putNumericOperator(Map<String, Function<JsonElement, Condition>> operators,
+                                           String operator, IntPredicate comparison) {
+        operators.put(operator, params -> {
+            String attribute = getParam(params, 0);
+            double expected = params.getAsJsonArray().get(1).getAsDouble();
+            return new AttributeMatches(attribute, stored -> {
+                try {
+                    return comparison.test(Double.compare(Double.parseDouble(stored), expected));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            });
+        });
+    }
 
-    private boolean evaluateAudienceFilter(Map<String, String> userAttributes, JsonObject rule) {
-        return operators.get(rule.get("operator").getAsString()).apply(userAttributes,
-                rule.get("value"));
+    private static void putVersionOperator(Map<String, Function<JsonElement, Condition>> operators,
+                                           String operator, IntPredicate comparison) {
+        operators.put(operator, params -> {
+            String attribute = getParam(params, 0);
+            SemanticVersion expected = SemanticVersion.parse(getParam(params, 1));
+            return new AttributeMatches(attribute, stored -> {
+                try {
+                    return comparison.test(SemanticVersion.parse(stored).compareTo(expected));
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            });
+        });
     }
 
-    private boolean evaluateAudienceRule(Map<String, String> userAttributes,
-                                         JsonObject audienceQuery, JsonObject rule) {
-        if (rule.has("combinator")) {
-            return evaluateAudienceQuery(userAttributes, rule);
+    private static String getParam(JsonElement params, int index) {
+        return params.getAsJsonArray().get(index).getAsString();
+    }
+
+    private static Set<String> getSetParam(JsonElement params, int index) {
+        Set<String> values = new HashSet<>();
+        for (JsonElement value : params.getAsJsonArray().get(index).getAsJsonArray()) {
+            values.add(value.getAsString());
+        }
+        return values;
+    }
+
+    /**
+     * Compiles an audience query.
+     * <p>
+     *     Operators, attribute names and constants are resolved once so that
+     *     evaluating the query does not touch the JSON again.
+     * </p>
+     * @param audienceQuery the audience query of an allocation, may be null
+     * @return the compiled query, null if there is no audience query
+     * @throws IllegalArgumentException if the audience query is malformed
+     */
+    static Condition compile(JsonElement audienceQuery) {
+        if (audienceQuery == null || audienceQuery.isJsonNull()) {
+            return null;
+        }
+
+        try {
+            return compileQuery(audienceQuery.getAsJsonObject());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("The audience query is malformed.", e);
         }
-        return evaluateAudienceFilter(userAttributes, rule);
     }
 
-    private boolean evaluateAudienceQuery(Map<String, String> userAttributes,
-                                          JsonObject audienceQuery) {
+    private static Condition compileQuery(JsonObject audienceQuery) {
         JsonElement rules = audienceQuery.get("rules");
 
         if (rules == null) {
-            return true;
+            return ALWAYS;
         }
 
-        for (JsonElement r : rules.getAsJsonArray()) {
-            boolean passed = evaluateAudienceRule(userAttributes, audienceQuery,
-                    r.getAsJsonObject());
+        JsonArray rawRules = rules.getAsJsonArray();
+        Condition[] conditions = new Condition[rawRules.size()];
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = compileRule(rawRules.get(i).getAsJsonObject());
+        }
 
-            String combinator = audienceQuery.get("combinator").getAsString();
-            if (passed && combinator.equals("or")) {
-                return true;
-            }
+        JsonElement combinator = audienceQuery.get("combinator");
+        if (combinator == null) {
+            throw new IllegalArgumentException("The audience query has no combinator.");
+        }
 
-            if (!passed && combinator.equals("and")) {
-                return false;
-            }
+        String combinatorName = combinator.getAsString();
+        if (combinatorName.equals("and")) {
+            return new AllOf(conditions);
+        } else if (combinatorName.equals("or")) {
+            return new AnyOf(conditions);
         }
 
-        return audienceQuery.get("combinator").getAsString().equals("and");
+        throw new IllegalArgumentException("Unknown audience query combinator: "
+                + combinatorName);
+    }
+
+    private static Condition compileRule(JsonObject rule) {
+        if (rule.has("combinator")) {
+            return compileQuery(rule);
+        }
+
+        String operator = rule.get("operator").getAsString();
+        Function<JsonElement, Condition> compiler = OPERATORS.get(operator);
+        if (compiler == null) {
+            throw new IllegalArgumentException("Unknown audience query operator: " + operator);
+        }
+
+        return compiler.apply(rule.get("value"));
+    }
+
+    /**
+     * Determines whether on not to filter the user based upon the supplied user
+     * attributes and a compiled audience query.
+     * @param userAttributes map representing attributes that represent the participant
+     * @param excluded whether the participant was excluded from the allocation
+     * @param audienceQuery the compiled audience query, null if there is none
+     * @return true if participant should be filters, false if not
+     */
+    static boolean filter(Map<String, String> userAttributes, boolean excluded,
+                          Condition audienceQuery) {
+        if (excluded) {
+            return true;
+        }
+
+        if (userAttributes == null || userAttributes.isEmpty() || audienceQuery == null) {
+            return false;
+        }
+
+        return !audienceQuery.test(userAttributes);
     }
 
     /**
@@ -109,14 +230,82 @@ public class Audience {
             return true;
         }
 
-        JsonElement audienceQuery = allocation.get("audience_query");
-        if (userAttributes == null || userAttributes.isEmpty()
-                || audienceQuery == null || audienceQuery.isJsonNull()) {
+        if (userAttributes == null || userAttributes.isEmpty()) {
             return false;
         }
 
-        return !evaluateAudienceQuery(userAttributes, audienceQuery.getAsJsonObject());
+        return filter(userAttributes, false, compile(allocation.get("audience_query")));
     }
 
+    private static final class AllOf implements Condition {
 
+        private final Condition[] conditions;
+
+        private AllOf(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        public boolean test(Map<String, String> userAttributes) {
+            for (Condition condition : conditions) {
+                if (!condition.test(userAttributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class AnyOf implements Condition {
+
+        private final Condition[] conditions;
+
+        private AnyOf(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        public boolean test(Map<String, String> userAttributes) {
+            for (Condition condition : conditions) {
+                if (condition.test(userAttributes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class AttributeExists implements Condition {
+
+        private final String attribute;
+
+        private AttributeExists(String attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        public boolean test(Map<String, String> userAttributes) {
+            return userAttributes.containsKey(attribute);
+        }
+    }
+
+    private static final class AttributeMatches implements Condition {
+
+        private final String attribute;
+        private final Predicate<String> matcher;
+
+        private AttributeMatches(String attribute, Predicate<String> matcher) {
+            this.attribute = attribute;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean test(Map<String, String> userAttributes) {
+            String storedValue = userAttributes.get(attribute);
+            if (storedValue == null) {
+                return false;
+            }
+            return matcher.test(storedValue);
+        }
+    }
 }
@@ -2,21 +2,92 @@ package ai.evolv;
 
 import com.google.gson.JsonArray;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * An in memory allocation store that keeps the allocations of the most
+ * recently used participants.
+ * <p>
+ *     Allocations are held encoded by {@link AllocationCodec} and decoded when
+ *     they are retrieved, so a participant costs a single byte array rather
+ *     than a tree of JSON elements. The decoded allocations are kept through a
+ *     weak reference while they are in use, so repeated retrievals return the
+ *     same instance and clients reuse the allocations they already parsed.
+ * </p>
+ * <p>
+ *     Flags are kept next to the encoded allocations and set on them when they
+ *     are decoded, so storing a flag does not encode the allocations again.
+ * </p>
+ */
 public class DefaultAllocationStore implements AscendAllocationStore {
 
-    private LruCache cache;
+    private LruCache<Entry> cache;
 
     public DefaultAllocationStore(int size) {
-        this.cache = new LruCache(size);
+        this.cache = new LruCache<>(size);
     }
 
     @Override
     public JsonArray get(String uid) {
-        return cache.getEntry(uid);
+        Entry entry = cache.getEntry(uid);
+        return entry == null ? new JsonArray() : entry.getAllocations();
     }
 
     @Override
     public void put(String uid, JsonArray allocations) {
-        cache.putEntry(uid, allocations);
+        cache.putEntry(uid, new Entry(AllocationCodec.encode(allocations), allocations));
+    }
+
+    @Override
+    public void putFlag(String uid, String experimentId, String flag) {
+        cache.updateEntry(uid, entry -> entry.withFlag(experimentId, flag));
+    }
+
+    private static final class Entry {
+
+        private static final String[] NO_FLAGS = {};
+
+        private final byte[] encoded;
+        // experiment ids and flags in pairs
+        private final String[] flags;
+        private volatile WeakReference<JsonArray> decoded;
+
+        private Entry(byte[] encoded, JsonArray allocations) {
+            this(encoded, NO_FLAGS, allocations);
+        }
+
+        private Entry(byte[] encoded, String[] flags, JsonArray allocations) {
+            this.encoded = encoded;
+            this.flags = flags;
+            this.decoded = new WeakReference<>(allocations);
+        }
+
+        JsonArray getAllocations() {
+            JsonArray allocations = decoded.get();
+            if (allocations == null) {
+                // concurrent callers may each decode, any of the instances is correct
+                allocations = AllocationCodec.decode(encoded);
+                for (int i = 0; i < flags.length; i += 2) {
+                    Allocations.setFlag(allocations, flags[i], flags[i + 1]);
+                }
+                decoded = new WeakReference<>(allocations);
+            }
+            return allocations;
+        }
+
+        Entry withFlag(String experimentId, String flag) {
+            for (int i = 0; i < flags.length; i += 2) {
+                if (flags[i].equals(experimentId) && flags[i + 1].equals(flag)) {
+                    return this;
+                }
+            }
+
+            String[] flagged = Arrays.copyOf(flags, flags.length + 2);
+            flagged[flags.length] = experimentId;
+            flagged[flags.length + 1] = flag;
+            // the decoded allocations may be in use, they are decoded again with the flag
+            return new Entry(encoded, flagged, null);
+        }
     }
 }
@@ -0,0 +1,165 @@
+package ai.evolv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends event requests from a background thread.
+ * <p>
+ *     Event urls are buffered in a bounded queue and sent in batches, either once
+ *     a batch is full or once the flush interval has passed since the first
+ *     buffered event. The events API takes a single event per request, so a
+ *     batch is sent as one request per event, batching only moves the requests
+ *     off the calling thread. When the buffer is full, or the dispatcher has
+ *     been shut down, new events are dropped and counted rather than blocking
+ *     the caller.
+ * </p>
+ */
+final class EventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventDispatcher.class);
+
+    private final HttpClient httpClient;
+    private final BlockingQueue<String> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread worker;
+    private final AscendMetrics metrics;
+
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    EventDispatcher(HttpClient httpClient, int bufferSize, int batchSize, long flushInterval,
+                    TimeUnit unit) {
+        this(httpClient, bufferSize, batchSize, flushInterval, unit, NoopMetrics.INSTANCE);
+    }
+
+    EventDispatcher(HttpClient httpClient, int bufferSize, int batchSize, long flushInterval,
+                    TimeUnit unit, AscendMetrics metrics) {
+        this.metrics = metrics;
+        this.httpClient = httpClient;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.worker = new Thread(this::run, "ascend-event-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Buffers an event request.
+     * @param url the url of the event request
+     * @return true if the event was buffered, false if it was dropped
+     */
+    boolean dispatch(String url) {
+        if (!running || !buffer.offer(url)) {
+            return drop();
+        }
+
+        if (!running && buffer.remove(url)) {
+            // shut down while buffering, the worker may already have sent its last batch
+            return drop();
+        }
+        return true;
+    }
+
+    private boolean drop() {
+        droppedEvents.incrementAndGet();
+        metrics.increment(AscendMetrics.Counter.EVENT_DROPPED);
+        LOGGER.debug("The event buffer is full or shut down, dropping the event.");
+        return false;
+    }
+
+    /**
+     * Stops accepting events and sends the events that are still buffered.
+     * @param timeout how long to wait for the buffered events to be sent
+     * @param unit the unit of the timeout
+     * @return true if every buffered event was sent before the timeout
+     */
+    boolean shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !worker.isAlive();
+    }
+
+    long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    long getFailedEvents() {
+        return failedEvents.get();
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                batch.add(buffer.take());
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+
+                    String url = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (url == null) {
+                        break;
+                    }
+                    batch.add(url);
+                }
+
+                send(batch);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("The event dispatcher was interrupted, flushing the buffered events.");
+        }
+
+        buffer.drainTo(batch);
+        send(batch);
+    }
+
+    private void send(List<String> batch) {
+        for (String url : batch) {
+            try {
+                CompletableFuture<String> response = httpClient.get(url);
+                sentEvents.incrementAndGet();
+                metrics.increment(AscendMetrics.Counter.EVENT_SENT);
+                if (response != null) {
+                    response.whenComplete((body, e) -> {
+                        if (e != null) {
+                            failedEvents.incrementAndGet();
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                failedEvents.incrementAndGet();
+                metrics.increment(AscendMetrics.Counter.EVENT_DROPPED);
+                LOGGER.error("There was an exception while making an event request with {}",
+                        url, e);
+            }
+        }
+        batch.clear();
+    }
+}
@@ -1,9 +1,5 @@
 package ai.evolv;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
 import java.net.URI;
 import java.net.URL;
 
@@ -18,14 +14,14 @@ class EventEmitter {
     static final String CONTAMINATE_KEY = "contamination";
 
     private final HttpClient httpClient;
+    private final EventDispatcher eventDispatcher;
     private final AscendConfig config;
     private final AscendParticipant participant;
     private final AscendAllocationStore store;
 
-    private final Audience audience = new Audience();
-
     EventEmitter(AscendConfig config, AscendParticipant participant, AscendAllocationStore store) {
         this.httpClient = config.getHttpClient();
+        this.eventDispatcher = config.getEventDispatcher();
         this.config = config;
         this.participant = participant;
         this.store = store;
@@ -41,39 +37,51 @@ class EventEmitter {
         makeEventRequest(url);
     }
 
-    void confirm(JsonArray allocations) {
+    void confirm(AllocationSet allocations) {
         sendAllocationEvents(CONFIRM_KEY, allocations);
     }
 
-    void contaminate(JsonArray allocations)  {
+    void contaminate(AllocationSet allocations)  {
         sendAllocationEvents(CONTAMINATE_KEY, allocations);
     }
 
-    void sendAllocationEvents(String key, JsonArray allocations) {
-        for (JsonElement a : allocations) {
-            JsonObject allocation = a.getAsJsonObject();
-            if (!audience.filter(participant.getUserAttributes(), allocation)
-                    && Allocations.isTouched(allocation)
-                    && !Allocations.isConfirmed(allocation)
-                    && !Allocations.isContaminated(allocation)) {
-                String experimentId = allocation.get("eid").getAsString();
-                String candidateId = allocation.get("cid").getAsString();
-
-                String url = getEventUrl(key, experimentId, candidateId);
+    void sendAllocationEvents(String key, AllocationSet allocations) {
+        AttributesSnapshot userAttributes = AttributesSnapshot.of(participant.getUserAttributes());
+        for (int i = 0; i < allocations.size(); i++) {
+            Allocation allocation = allocations.getAllocation(i);
+            if (!allocations.isFiltered(i, userAttributes)
+                    && allocation.isTouched()
+                    && mark(key, allocation)) {
+                String url = getEventUrl(key, allocation.getExperimentId(),
+                        allocation.getCandidateId());
                 makeEventRequest(url);
 
                 if (key.equals(CONFIRM_KEY)) {
-                    Allocations.markConfirmed(allocation);
+                    store.putFlag(participant.getUserId(), allocation.getExperimentId(),
+                            ParticipantFlags.CONFIRMED_PROPERTY);
                 } else if (key.equals(CONTAMINATE_KEY)) {
-                    Allocations.markContaminated(allocation);
+                    store.putFlag(participant.getUserId(), allocation.getExperimentId(),
+                            ParticipantFlags.CONTAMINATED_PROPERTY);
                 }
 
                 continue;
             }
-            LOGGER.debug(String.format("%s event filtered for experiment %s.", key,
-                    allocation.get("eid").getAsString()));
+            LOGGER.debug("{} event filtered for experiment {}.", key,
+                    allocation.getExperimentId());
         }
-        store.put(this.participant.getUserId(), allocations);
+    }
+
+    /**
+     * Marks the allocation as confirmed or contaminated, so that concurrent
+     * callers send the event only once.
+     */
+    private static boolean mark(String key, Allocation allocation) {
+        if (key.equals(CONFIRM_KEY)) {
+            return allocation.markConfirmed();
+        } else if (key.equals(CONTAMINATE_KEY)) {
+            return allocation.markContaminated();
+        }
+        return !allocation.isConfirmed() && !allocation.isContaminated();
     }
 
     String getEventUrl(String type, Double score) {
@@ -120,11 +128,18 @@ class EventEmitter {
 
     private void makeEventRequest(String url) {
         if (url != null) {
+            if (eventDispatcher != null) {
+                eventDispatcher.dispatch(url);
+                return;
+            }
+
             try {
                 httpClient.get(url);
+                config.getMetrics().increment(AscendMetrics.Counter.EVENT_SENT);
             } catch (Exception e) {
-                LOGGER.error(String.format("There was an exception while making" +
-                        " an event request with %s", url), e);
+                config.getMetrics().increment(AscendMetrics.Counter.EVENT_DROPPED);
+                LOGGER.error("There was an exception while making an event request with {}",
+                        url, e);
             }
         } else {
             LOGGER.debug("The event url was null, skipping event request.");
@@ -1,28 +1,49 @@
 package ai.evolv;
 
-import ai.evolv.exceptions.AscendKeyError;
-import ai.evolv.generics.GenericClass;
-
-import com.google.gson.JsonArray;
-
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
+/**
+ * A subscription to a value of the participant's allocations.
+ * <p>
+ *     The value is looked up on the calling thread. The subscribed action is
+ *     applied inline, or dispatched to the subscription's executor when it has
+ *     one, so a slow action does not hold up the thread that completed the
+ *     allocation request. The values of a subscription are applied one at a
+ *     time and in the order they were resolved by a {@link SerialAction}, a
+ *     stored value is never applied after the fetched one. Different
+ *     subscriptions are independent tasks and run in parallel when the
+ *     executor has several threads.
+ * </p>
+ */
 class Execution<T> {
 
     private final String key;
     private final T defaultValue;
-    private final AscendAction function;
+    private final AscendAction<T> function;
     private final AscendParticipant participant;
     private final AscendAllocationStore store;
 
-    private Set<String> alreadyExecuted = new HashSet<>();
+    private volatile Set<String> alreadyExecuted = new HashSet<>();
 
     Execution(String key, T defaultValue, AscendAction<T> function, AscendParticipant participant,
               AscendAllocationStore store) {
+        this(key, defaultValue, function, participant, store, null);
+    }
+
+    /**
+     * Creates a subscription whose action is applied by an executor.
+     * @param executor the executor applying the action, null applies it on
+     *                 the calling thread
+     */
+    Execution(String key, T defaultValue, AscendAction<T> function, AscendParticipant participant,
+              AscendAllocationStore store, Executor executor) {
         this.key = key;
         this.defaultValue = defaultValue;
-        this.function = function;
+        this.function = executor == null ? function
+                : new SerialAction<>(key, function, executor);
         this.participant = participant;
         this.store = store;
     }
@@ -31,22 +52,29 @@ class Execution<T> {
         return key;
     }
 
-    void executeWithAllocation(JsonArray rawAllocations) throws AscendKeyError {
-        GenericClass<T> cls = new GenericClass(defaultValue.getClass());
-        Allocations allocations = new Allocations(rawAllocations, store);
-        T value = allocations.getValueFromAllocations(key, cls.getMyType(), participant);
-
-        if (value == null) {
-            throw new AscendKeyError("Got null when retrieving key from allocations.");
+    /**
+     * Applies the value of the key from the allocations.
+     * @param allocationSet the participant's allocations
+     * @return false if the allocations hold no value for the key, nothing
+     *         is applied then
+     */
+    boolean executeWithAllocation(AllocationSet allocationSet) {
+        @SuppressWarnings("unchecked")
+        Class<T> cls = (Class<T>) defaultValue.getClass();
+        Allocations allocations = new Allocations(allocationSet, store);
+        Optional<T> value = allocations.lookupValue(key, cls, participant);
+        if (!value.isPresent()) {
+            return false;
         }
 
         Set<String> activeExperiments = allocations.getActiveExperiments();
         if (alreadyExecuted.isEmpty() || !alreadyExecuted.equals(activeExperiments)) {
             // there was a change to the allocations after reconciliation, apply changes
-            function.apply(value);
+            function.apply(value.get());
         }
 
         alreadyExecuted = activeExperiments;
+        return true;
     }
 
     void executeWithDefault() {
@@ -1,40 +1,37 @@
 package ai.evolv;
 
-import ai.evolv.exceptions.AscendKeyError;
-
-import com.google.gson.JsonArray;
-
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Applies the subscriptions, confirmations and contaminations that waited for
+ * a client's allocations to be fetched. The waiting requests are held by the
+ * client's {@link Allocator}.
+ * <p>
+ *     Values are looked up on the thread that resolves the allocations, the
+ *     subscribed actions are applied by the executor of each subscription, see
+ *     {@link Execution}. Confirmations and contaminations are sent once every
+ *     value has been looked up, as looking a value up touches its allocation.
+ * </p>
+ */
 class ExecutionQueue {
 
     private static Logger LOGGER = LoggerFactory.getLogger(ExecutionQueue.class);
 
-    private final ConcurrentLinkedQueue<Execution> queue;
-
-    ExecutionQueue() {
-        this.queue = new ConcurrentLinkedQueue<>();
-    }
-
-    void enqueue(Execution execution) {
-        this.queue.add(execution);
-    }
-
-    void executeAllWithValuesFromAllocations(JsonArray allocations,
+    void executeAllWithValuesFromAllocations(List<Execution<?>> executions,
+                                             AllocationSet allocationSet,
                                              EventEmitter eventEmitter,
                                              boolean confirmationSandbagged,
                                              boolean contaminationSandbagged) {
-        while (!queue.isEmpty()) {
-            Execution execution = queue.remove();
+        for (Execution<?> execution : executions) {
             try {
-                execution.executeWithAllocation(allocations);
-            } catch (AscendKeyError e) {
-                LOGGER.debug(String.format("There was an error retrieving" +
-                        " the value of %s from the allocation.",  execution.getKey()), e);
-                execution.executeWithDefault();
+                if (!execution.executeWithAllocation(allocationSet)) {
+                    LOGGER.debug("There was no value for {} in the allocation.",
+                            execution.getKey());
+                    execution.executeWithDefault();
+                }
             } catch (Exception e) {
                 LOGGER.error("There was an issue while performing one of" +
                         " the stored actions.", e);
@@ -42,17 +39,16 @@ class ExecutionQueue {
         }
 
         if (confirmationSandbagged) {
-            eventEmitter.confirm(allocations);
+            eventEmitter.confirm(allocationSet);
         }
 
         if (contaminationSandbagged) {
-            eventEmitter.contaminate(allocations);
+            eventEmitter.contaminate(allocationSet);
         }
     }
 
-    void executeAllWithValuesFromDefaults() {
-        while (!queue.isEmpty()) {
-            Execution execution = queue.remove();
+    void executeAllWithValuesFromDefaults(List<Execution<?>> executions) {
+        for (Execution<?> execution : executions) {
             execution.executeWithDefault();
         }
     }
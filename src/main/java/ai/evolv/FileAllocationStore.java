@@ -0,0 +1,684 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An allocation store that keeps participants' allocations on disk so they
+ * survive restarts.
+ * <p>
+ *     Allocations are encoded by {@link AllocationCodec} and appended to a log
+ *     file, each record protected by a checksum. A memory mapped, open
+ *     addressing hash index maps a uid to its latest record, so a lookup reads
+ *     the index and a single record without holding any participant on the
+ *     heap. Records that were cut short by a
+ *     crash are dropped when the store is opened, and an index that does not
+ *     match the log is rebuilt from it.
+ * </p>
+ * <p>
+ *     Every put appends a new record. A flag is appended as a small record that
+ *     points to the participant's previous record and is set on the
+ *     allocations when they are read. Once more than half of the log is taken
+ *     by replaced records, the live records are copied into a new log and the
+ *     flags are merged into the allocations they belong to.
+ * </p>
+ */
+public class FileAllocationStore implements AscendAllocationStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileAllocationStore.class);
+
+    static final String LOG_FILE = "allocations.log";
+    static final String INDEX_FILE = "allocations.idx";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final int LOG_MAGIC = 0x41534c47;
+    private static final int INDEX_MAGIC = 0x41534958;
+    private static final int FORMAT_VERSION = 1;
+
+    // magic, version, generation
+    private static final int LOG_HEADER_SIZE = 16;
+    // magic, version, generation, capacity, size, indexed log length, replaced bytes
+    private static final int INDEX_HEADER_SIZE = 40;
+    private static final int INDEX_CAPACITY = 16;
+    private static final int INDEX_SIZE = 20;
+    private static final int INDEX_LOG_LENGTH = 24;
+    private static final int INDEX_DEAD_BYTES = 32;
+    // hash, record offset
+    private static final int SLOT_SIZE = 16;
+    // length, checksum, uid length
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    // the value of a flag record starts with a byte no encoded allocations start with
+    private static final byte FLAG_RECORD = 0;
+    // marker, previous record offset, experiment id length
+    private static final int FLAG_HEADER_SIZE = 13;
+    private static final int MAX_FLAG_RECORDS = 16;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel log;
+    private long generation;
+    private long logLength;
+    private long deadBytes;
+
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size;
+
+    private boolean closed;
+
+    /**
+     * Opens the store kept in the given directory, creating it if needed.
+     * @param directory the directory holding the store's files
+     * @throws IOException if the store cannot be opened
+     */
+    public FileAllocationStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        openLog();
+        openIndex();
+    }
+
+    @Override
+    public JsonArray get(String uid) {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                LOGGER.error("The allocation store is closed, no allocations were read.");
+                return new JsonArray();
+            }
+
+            byte[] uidBytes = uid.getBytes(StandardCharsets.UTF_8);
+            long offset = find(uidBytes, hash(uidBytes));
+            if (offset < 0) {
+                return new JsonArray();
+            }
+
+            return readAllocations(offset, uidBytes.length);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to read the allocations of {}.", uid, e);
+            return new JsonArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String uid, JsonArray allocations) {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                LOGGER.error("The allocation store is closed, the allocations were not stored.");
+                return;
+            }
+
+            byte[] uidBytes = uid.getBytes(StandardCharsets.UTF_8);
+            append(uidBytes, AllocationCodec.encode(allocations), false);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to store the allocations of {}.", uid, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putFlag(String uid, String experimentId, String flag) {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                LOGGER.error("The allocation store is closed, the flag was not stored.");
+                return;
+            }
+
+            byte[] uidBytes = uid.getBytes(StandardCharsets.UTF_8);
+            long offset = find(uidBytes, hash(uidBytes));
+            if (offset < 0) {
+                return;
+            }
+
+            List<FlagRecord> flags = readFlagRecords(offset, uidBytes.length);
+            for (FlagRecord flagRecord : flags) {
+                if (flagRecord.experimentId.equals(experimentId) && flagRecord.flag.equals(flag)) {
+                    return;
+                }
+            }
+
+            if (flags.size() < MAX_FLAG_RECORDS) {
+                append(uidBytes, FlagRecord.encode(offset, experimentId, flag), true);
+                return;
+            }
+
+            // a long chain of flags is merged into the allocations
+            JsonArray allocations = readAllocations(offset, uidBytes.length);
+            Allocations.setFlag(allocations, experimentId, flag);
+            append(uidBytes, AllocationCodec.encode(allocations), false);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to store the {} flag of {}.", flag, uid, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the store's files to disk and closes them.
+     * @throws IOException if the files cannot be flushed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            index.force();
+            log.force(true);
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a record and points the participant's index slot to it.
+     * @param flag true if the record is a flag record that keeps the previous
+     *             record alive
+     */
+    private void append(byte[] uidBytes, byte[] value, boolean flag) throws IOException {
+        ByteBuffer record = createRecord(uidBytes, value);
+        long offset = logLength;
+        writeFully(log, record, offset);
+        logLength += record.limit();
+
+        index(uidBytes, hash(uidBytes), offset, flag);
+        writeIndexHeader();
+
+        if (logLength > MIN_COMPACTION_SIZE && deadBytes * 2 > logLength) {
+            compact();
+        }
+    }
+
+    /**
+     * Reads a participant's allocations and sets the flags recorded after them.
+     */
+    private JsonArray readAllocations(long offset, int uidLength) throws IOException {
+        List<FlagRecord> flags = readFlagRecords(offset, uidLength);
+        long allocationsOffset = flags.isEmpty() ? offset : flags.get(flags.size() - 1).previous;
+        ByteBuffer record = readRecord(allocationsOffset);
+        JsonArray allocations = AllocationCodec.decode(Arrays.copyOfRange(record.array(),
+                RECORD_HEADER_SIZE + uidLength, record.limit()));
+        for (FlagRecord flag : flags) {
+            Allocations.setFlag(allocations, flag.experimentId, flag.flag);
+        }
+        return allocations;
+    }
+
+    /**
+     * Reads the flag records from a participant's latest record down to the
+     * record of the allocations they belong to.
+     */
+    private List<FlagRecord> readFlagRecords(long offset, int uidLength) throws IOException {
+        List<FlagRecord> flags = new ArrayList<>();
+        while (isFlagRecord(offset, uidLength)) {
+            FlagRecord flag = FlagRecord.decode(readRecord(offset), RECORD_HEADER_SIZE + uidLength,
+                    offset);
+            // records only ever point backwards, which also rules out cycles
+            if (flag.previous < LOG_HEADER_SIZE || flag.previous >= offset) {
+                throw new IOException(String.format("The flag record at %d is corrupt.",
+                        offset));
+            }
+            flags.add(flag);
+            offset = flag.previous;
+        }
+        return flags;
+    }
+
+    private boolean isFlagRecord(long offset, int uidLength) throws IOException {
+        ByteBuffer marker = ByteBuffer.allocate(1);
+        readFully(log, marker, offset + RECORD_HEADER_SIZE + uidLength);
+        return marker.get(0) == FLAG_RECORD;
+    }
+
+    /**
+     * Returns the length of a participant's latest record together with the
+     * records it keeps alive.
+     */
+    private long liveLength(long offset, int uidLength) throws IOException {
+        long length = 0;
+        for (FlagRecord flag : readFlagRecords(offset, uidLength)) {
+            length += flag.length;
+            offset = flag.previous;
+        }
+        return length + recordLength(offset);
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getLogLength() {
+        lock.readLock().lock();
+        try {
+            return logLength;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void openLog() throws IOException {
+        log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() < LOG_HEADER_SIZE) {
+            generation = ThreadLocalRandom.current().nextLong();
+            writeLogHeader(log, generation);
+            logLength = LOG_HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        readFully(log, header, 0);
+        if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            log.close();
+            throw new IOException(String.format("%s is not an allocation log.",
+                    directory.resolve(LOG_FILE)));
+        }
+        generation = header.getLong(8);
+        logLength = log.size();
+    }
+
+    private void openIndex() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        long indexedLength = -1;
+        if (Files.exists(indexPath) && Files.size(indexPath) >= INDEX_HEADER_SIZE) {
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        channel.size());
+                int mappedCapacity = mapped.getInt(INDEX_CAPACITY);
+                if (mapped.getInt(0) == INDEX_MAGIC && mapped.getInt(4) == FORMAT_VERSION
+                        && mapped.getLong(8) == generation
+                        && Integer.bitCount(mappedCapacity) == 1
+                        && channel.size() == INDEX_HEADER_SIZE + (long) mappedCapacity * SLOT_SIZE
+                        && mapped.getLong(INDEX_LOG_LENGTH) <= logLength) {
+                    index = mapped;
+                    capacity = mappedCapacity;
+                    size = mapped.getInt(INDEX_SIZE);
+                    deadBytes = mapped.getLong(INDEX_DEAD_BYTES);
+                    indexedLength = mapped.getLong(INDEX_LOG_LENGTH);
+                }
+            }
+        }
+
+        if (indexedLength < 0) {
+            LOGGER.info("Rebuilding the allocation store index from the log.");
+            capacity = MIN_CAPACITY;
+            size = 0;
+            deadBytes = 0;
+            index = createIndex(indexPath, generation, capacity);
+            indexedLength = LOG_HEADER_SIZE;
+        }
+
+        replay(indexedLength);
+    }
+
+    /**
+     * Indexes the records appended after the given position and drops an
+     * incomplete or corrupt tail.
+     */
+    private void replay(long position) throws IOException {
+        long end = log.size();
+        while (position + RECORD_HEADER_SIZE <= end) {
+            ByteBuffer record;
+            try {
+                record = readRecord(position);
+            } catch (IOException e) {
+                break;
+            }
+
+            int uidLength = record.getInt(8);
+            byte[] uidBytes = Arrays.copyOfRange(record.array(), RECORD_HEADER_SIZE,
+                    RECORD_HEADER_SIZE + uidLength);
+            boolean flag = record.limit() > RECORD_HEADER_SIZE + uidLength
+                    && record.get(RECORD_HEADER_SIZE + uidLength) == FLAG_RECORD;
+            logLength = position + record.limit();
+            index(uidBytes, hash(uidBytes), position, flag);
+            position = logLength;
+        }
+
+        if (position < end) {
+            LOGGER.warn("Dropping {} bytes of incomplete allocations at the end of the "
+                    + "allocation log.", end - position);
+            log.truncate(position);
+        }
+        logLength = position;
+        writeIndexHeader();
+    }
+
+    private long find(byte[] uidBytes, long hash) throws IOException {
+        int mask = capacity - 1;
+        for (int slot = slotFor(hash, mask); ; slot = (slot + 1) & mask) {
+            int slotPosition = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = index.getLong(slotPosition);
+            if (slotHash == 0) {
+                return -1;
+            }
+
+            long offset = index.getLong(slotPosition + 8);
+            if (slotHash == hash && hasUid(offset, uidBytes)) {
+                return offset;
+            }
+        }
+    }
+
+    private void index(byte[] uidBytes, long hash, long offset, boolean flag)
+            throws IOException {
+        if ((size + 1) * 10L > capacity * 7L) {
+            resize(capacity * 2);
+        }
+
+        int mask = capacity - 1;
+        for (int slot = slotFor(hash, mask); ; slot = (slot + 1) & mask) {
+            int slotPosition = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = index.getLong(slotPosition);
+            if (slotHash == 0) {
+                // the offset is written first, a slot only counts once it has a hash
+                index.putLong(slotPosition + 8, offset);
+                index.putLong(slotPosition, hash);
+                size++;
+                return;
+            }
+
+            long previousOffset = index.getLong(slotPosition + 8);
+            if (slotHash == hash && hasUid(previousOffset, uidBytes)) {
+                if (!flag) {
+                    deadBytes += liveLength(previousOffset, uidBytes.length);
+                }
+                index.putLong(slotPosition + 8, offset);
+                return;
+            }
+        }
+    }
+
+    private void resize(int newCapacity) throws IOException {
+        Path compactPath = directory.resolve(INDEX_FILE + COMPACT_SUFFIX);
+        MappedByteBuffer resized = createIndex(compactPath, generation, newCapacity);
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            int slotPosition = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long hash = index.getLong(slotPosition);
+            if (hash != 0) {
+                insertSlot(resized, mask, hash, index.getLong(slotPosition + 8));
+            }
+        }
+
+        index = resized;
+        capacity = newCapacity;
+        writeIndexHeader();
+        index.force();
+        Files.move(compactPath, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copies the live records into a new log with a new generation. Should the
+     * process stop before both files are replaced, the generations of the log
+     * and the index no longer match and the index is rebuilt on open.
+     */
+    private void compact() throws IOException {
+        long compactGeneration = ThreadLocalRandom.current().nextLong();
+        int compactCapacity = MIN_CAPACITY;
+        while (size * 10L > compactCapacity * 7L) {
+            compactCapacity *= 2;
+        }
+
+        Path compactLogPath = directory.resolve(LOG_FILE + COMPACT_SUFFIX);
+        Path compactIndexPath = directory.resolve(INDEX_FILE + COMPACT_SUFFIX);
+        MappedByteBuffer compactIndex = createIndex(compactIndexPath, compactGeneration,
+                compactCapacity);
+        long position = LOG_HEADER_SIZE;
+        try (FileChannel compactLog = FileChannel.open(compactLogPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeLogHeader(compactLog, compactGeneration);
+            for (int slot = 0; slot < capacity; slot++) {
+                int slotPosition = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+                long hash = index.getLong(slotPosition);
+                if (hash == 0) {
+                    continue;
+                }
+
+                long offset = index.getLong(slotPosition + 8);
+                ByteBuffer record = readRecord(offset);
+                int uidLength = record.getInt(8);
+                if (isFlagRecord(offset, uidLength)) {
+                    byte[] uidBytes = Arrays.copyOfRange(record.array(), RECORD_HEADER_SIZE,
+                            RECORD_HEADER_SIZE + uidLength);
+                    record = createRecord(uidBytes,
+                            AllocationCodec.encode(readAllocations(offset, uidLength)));
+                }
+                writeFully(compactLog, record, position);
+                insertSlot(compactIndex, compactCapacity - 1, hash, position);
+                position += record.limit();
+            }
+            compactLog.force(true);
+        }
+
+        log.close();
+        Files.move(compactLogPath, directory.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        LOGGER.debug("Compacted the allocation log from {} to {} bytes.", logLength, position);
+        generation = compactGeneration;
+        index = compactIndex;
+        capacity = compactCapacity;
+        logLength = position;
+        deadBytes = 0;
+        writeIndexHeader();
+        index.force();
+        Files.move(compactIndexPath, directory.resolve(INDEX_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void insertSlot(MappedByteBuffer target, int mask, long hash, long offset) {
+        for (int slot = slotFor(hash, mask); ; slot = (slot + 1) & mask) {
+            int slotPosition = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            if (target.getLong(slotPosition) == 0) {
+                target.putLong(slotPosition + 8, offset);
+                target.putLong(slotPosition, hash);
+                return;
+            }
+        }
+    }
+
+    private static MappedByteBuffer createIndex(Path path, long generation, int capacity)
+            throws IOException {
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            mapped.putInt(0, INDEX_MAGIC);
+            mapped.putInt(4, FORMAT_VERSION);
+            mapped.putLong(8, generation);
+            mapped.putInt(INDEX_CAPACITY, capacity);
+            return mapped;
+        }
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(INDEX_SIZE, size);
+        index.putLong(INDEX_LOG_LENGTH, logLength);
+        index.putLong(INDEX_DEAD_BYTES, deadBytes);
+    }
+
+    private static void writeLogHeader(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION).putLong(generation);
+        writeFully(channel, header, 0);
+    }
+
+    private static ByteBuffer createRecord(byte[] uidBytes, byte[] value) {
+        int length = RECORD_HEADER_SIZE + uidBytes.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(0).putInt(uidBytes.length).put(uidBytes).put(value);
+        record.putInt(4, checksum(record.array(), length));
+        return record;
+    }
+
+    /**
+     * Reads a whole record and verifies its checksum.
+     * @throws IOException if the record is incomplete or corrupt
+     */
+    private ByteBuffer readRecord(long offset) throws IOException {
+        int length = recordLength(offset);
+        if (length < RECORD_HEADER_SIZE || offset + length > log.size()) {
+            throw new IOException(String.format("The allocation record at %d is incomplete.",
+                    offset));
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(log, record, offset);
+        int uidLength = record.getInt(8);
+        if (record.getInt(4) != checksum(record.array(), length)
+                || uidLength < 0 || uidLength > length - RECORD_HEADER_SIZE) {
+            throw new IOException(String.format("The allocation record at %d is corrupt.",
+                    offset));
+        }
+        return record;
+    }
+
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(log, length, offset);
+        return length.getInt(0);
+    }
+
+    private boolean hasUid(long offset, byte[] uidBytes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + uidBytes.length);
+        if (offset < LOG_HEADER_SIZE || offset + header.capacity() > logLength) {
+            return false;
+        }
+
+        readFully(log, header, offset);
+        if (header.getInt(8) != uidBytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < uidBytes.length; i++) {
+            if (header.get(RECORD_HEADER_SIZE + i) != uidBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(byte[] record, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, length - 8);
+        return (int) crc.getValue();
+    }
+
+    private static long hash(byte[] uidBytes) {
+        // 64 bit FNV-1a, zero marks an empty slot
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : uidBytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int slotFor(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of the allocation store.");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer record, long position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record.array(), 0, record.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static final class FlagRecord {
+
+        private final long previous;
+        private final String experimentId;
+        private final String flag;
+        private final int length;
+
+        private FlagRecord(long previous, String experimentId, String flag, int length) {
+            this.previous = previous;
+            this.experimentId = experimentId;
+            this.flag = flag;
+            this.length = length;
+        }
+
+        static byte[] encode(long previous, String experimentId, String flag) {
+            byte[] eidBytes = experimentId.getBytes(StandardCharsets.UTF_8);
+            byte[] flagBytes = flag.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer value = ByteBuffer.allocate(FLAG_HEADER_SIZE + eidBytes.length
+                    + flagBytes.length);
+            value.put(FLAG_RECORD).putLong(previous).putInt(eidBytes.length).put(eidBytes)
+                    .put(flagBytes);
+            return value.array();
+        }
+
+        static FlagRecord decode(ByteBuffer record, int valueOffset, long offset)
+                throws IOException {
+            int eidOffset = valueOffset + FLAG_HEADER_SIZE;
+            int eidLength = eidOffset <= record.limit() ? record.getInt(valueOffset + 9) : -1;
+            if (eidLength < 0 || eidOffset + eidLength > record.limit()) {
+                throw new IOException(String.format("The flag record at %d is corrupt.",
+                        offset));
+            }
+
+            byte[] bytes = record.array();
+            return new FlagRecord(record.getLong(valueOffset + 1),
+                    new String(bytes, eidOffset, eidLength, StandardCharsets.UTF_8),
+                    new String(bytes, eidOffset + eidLength,
+                            record.limit() - eidOffset - eidLength, StandardCharsets.UTF_8),
+                    record.limit());
+        }
+    }
+}
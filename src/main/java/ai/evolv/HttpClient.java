@@ -1,5 +1,6 @@
 package ai.evolv;
 
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 
 public interface HttpClient {
@@ -17,4 +18,20 @@ public interface HttpClient {
      */
     CompletableFuture<String> get(String url);
 
+    /**
+     * Performs a GET request using the provided url and returns the raw body.
+     * <p>
+     *     The SDK reads allocations through this method so that they can be
+     *     decoded straight from the response bytes. The default implementation
+     *     encodes the body returned by {@link #get(String)}, implementations
+     *     that receive bytes should return them directly.
+     * </p>
+     * @param url a valid url representing a call to the Participant API.
+     * @return a future of the UTF-8 encoded response body
+     */
+    default CompletableFuture<byte[]> getBytes(String url) {
+        CompletableFuture<String> response = get(url);
+        return response.thenApply(body -> body.getBytes(StandardCharsets.UTF_8));
+    }
+
 }
@@ -0,0 +1,98 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the allocation requests that are currently in flight.
+ * <p>
+ *     Clients that are initialized concurrently for the same participant share
+ *     a single request instead of each calling the Participant API. A request
+ *     is forgotten as soon as it completes, so later clients always fetch
+ *     fresh allocations.
+ * </p>
+ */
+final class InFlightAllocations {
+
+    private final ConcurrentMap<Key, CompletableFuture<JsonArray>> requests =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Joins the request in flight for the participant or starts a new one.
+     * @param environmentId the customer's environment id
+     * @param uid the participant's user id
+     * @param sid the participant's session id
+     * @param fetch starts a new request when none is in flight
+     * @return the future allocations of the shared request
+     */
+    CompletableFuture<JsonArray> fetch(String environmentId, String uid, String sid,
+                                       Supplier<CompletableFuture<JsonArray>> fetch) {
+        Key key = new Key(environmentId, uid, sid);
+        CompletableFuture<JsonArray> request = new CompletableFuture<>();
+        CompletableFuture<JsonArray> inFlight = requests.putIfAbsent(key, request);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        CompletableFuture<JsonArray> response;
+        try {
+            response = fetch.get();
+        } catch (RuntimeException e) {
+            requests.remove(key, request);
+            request.completeExceptionally(e);
+            return request;
+        }
+
+        response.whenComplete((allocations, e) -> {
+            requests.remove(key, request);
+            if (e != null) {
+                request.completeExceptionally(e);
+            } else {
+                request.complete(allocations);
+            }
+        });
+
+        return request;
+    }
+
+    int size() {
+        return requests.size();
+    }
+
+    private static final class Key {
+
+        private final String environmentId;
+        private final String uid;
+        private final String sid;
+
+        private Key(String environmentId, String uid, String sid) {
+            this.environmentId = environmentId;
+            this.uid = uid;
+            this.sid = sid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(environmentId, key.environmentId)
+                    && Objects.equals(uid, key.uid)
+                    && Objects.equals(sid, key.sid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(environmentId, uid, sid);
+        }
+    }
+}
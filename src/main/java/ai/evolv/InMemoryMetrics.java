@@ -0,0 +1,158 @@
+package ai.evolv;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the SDK's metrics in memory.
+ * <p>
+ *     Counters are striped adders. Every timer is a histogram of power of two
+ *     nanosecond buckets, so recording is a couple of atomic increments and
+ *     percentiles are accurate to within a factor of two. Read them through
+ *     {@link #getCount(Counter)} and {@link #getHistogram(Timer)}, or expose
+ *     them from a periodic task.
+ * </p>
+ */
+public class InMemoryMetrics implements AscendMetrics {
+
+    private final Map<Timer, Histogram> histograms = new EnumMap<>(Timer.class);
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    /**
+     * Creates empty metrics.
+     */
+    public InMemoryMetrics() {
+        for (Timer timer : Timer.values()) {
+            histograms.put(timer, new Histogram());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    @Override
+    public void record(Timer timer, long nanos) {
+        histograms.get(timer).record(nanos);
+    }
+
+    @Override
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    /**
+     * Returns how many times something occurred.
+     * @param counter what occurred
+     * @return the count
+     */
+    public long getCount(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * Returns the recorded durations of an operation.
+     * @param timer the operation
+     * @return the operation's histogram
+     */
+    public Histogram getHistogram(Timer timer) {
+        return histograms.get(timer);
+    }
+
+    /**
+     * The durations recorded for an operation.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram() {
+        }
+
+        private void record(long nanos) {
+            long duration = Math.max(0, nanos);
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(duration));
+            count.increment();
+            total.add(duration);
+
+            long current = max.get();
+            while (duration > current && !max.compareAndSet(current, duration)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * Returns how many durations were recorded.
+         * @return the number of durations
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the sum of the recorded durations.
+         * @return the total in nanoseconds
+         */
+        public long getTotalNanos() {
+            return total.sum();
+        }
+
+        /**
+         * Returns the longest recorded duration.
+         * @return the maximum in nanoseconds, 0 if none were recorded
+         */
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        /**
+         * Returns the mean of the recorded durations.
+         * @return the mean in nanoseconds, 0 if none were recorded
+         */
+        public double getMeanNanos() {
+            long recorded = getCount();
+            return recorded == 0 ? 0 : (double) getTotalNanos() / recorded;
+        }
+
+        /**
+         * Estimates a percentile of the recorded durations.
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound of the bucket holding the percentile in
+         *         nanoseconds, never more than the maximum, 0 if none were recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            }
+
+            long[] snapshot = new long[BUCKETS];
+            long recorded = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                recorded += snapshot[i];
+            }
+            if (recorded == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    // bucket i holds durations below 2^i, (1 << 63) - 1 wraps to Long.MAX_VALUE
+                    long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                    return Math.min(upperBound, getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the reads and writes of an allocation store.
+ */
+final class InstrumentedAllocationStore implements AscendAllocationStore {
+
+    private final AscendAllocationStore store;
+    private final AscendMetrics metrics;
+
+    InstrumentedAllocationStore(AscendAllocationStore store, AscendMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public JsonArray get(String uid) {
+        long start = metrics.startTimer();
+        try {
+            return store.get(uid);
+        } finally {
+            metrics.stopTimer(AscendMetrics.Timer.STORE_GET, start);
+        }
+    }
+
+    @Override
+    public void put(String uid, JsonArray allocations) {
+        long start = metrics.startTimer();
+        try {
+            store.put(uid, allocations);
+        } finally {
+            metrics.stopTimer(AscendMetrics.Timer.STORE_PUT, start);
+        }
+    }
+
+    @Override
+    public void putFlag(String uid, String experimentId, String flag) {
+        long start = metrics.startTimer();
+        try {
+            store.putFlag(uid, experimentId, flag);
+        } finally {
+            metrics.stopTimer(AscendMetrics.Timer.STORE_PUT, start);
+        }
+    }
+
+    @Override
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        return store.shutdown(timeout, unit);
+    }
+}
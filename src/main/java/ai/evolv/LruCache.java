@@ -1,31 +1,98 @@
 package ai.evolv;
 
-import com.google.gson.JsonArray;
+import java.util.function.UnaryOperator;
 
-class LruCache {
+/**
+ * A bounded, thread safe cache that evicts the least recently used entries.
+ * <p>
+ *     Keys are spread over independently locked segments, each a small LRU
+ *     map, so concurrent readers and writers of different participants rarely
+ *     contend. Small caches use a single segment and therefore evict in exact
+ *     LRU order, larger ones evict the least recently used entry of a segment.
+ * </p>
+ */
+class LruCache<V> {
 
-    private MaxSizeHashMap<String, JsonArray> cache;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 32;
+
+    private final Segment<V>[] segments;
 
     LruCache(int cacheSize) {
-        this.cache = new MaxSizeHashMap<>(cacheSize);
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= cacheSize) {
+            segmentCount *= 2;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment<V>[] segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int segmentSize = cacheSize / segmentCount + (i < cacheSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment<>(segmentSize);
+        }
+        this.segments = segments;
     }
 
-    JsonArray getEntry(String key) {
-        if (cache.containsKey(key)) {
-            JsonArray entry = cache.get(key);
-            cache.remove(key);
-            cache.put(key, entry);
-            return entry;
+    /**
+     * Retrieves an entry and marks it as the most recently used.
+     * @param key the entry's key
+     * @return the entry, null if there is none
+     */
+    V getEntry(String key) {
+        Segment<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.entries.get(key);
         }
-        return new JsonArray();
     }
 
-    void putEntry(String key, JsonArray value) {
-        if (cache.containsKey(key)) {
-            cache.remove(key);
-            cache.put(key, value);
-        } else {
-            cache.put(key, value);
+    /**
+     * Replaces an existing entry and marks it as the most recently used.
+     * @param key the entry's key
+     * @param update computes the new entry from the existing one, called under
+     *               the segment's lock
+     * @return false if there was no entry
+     */
+    boolean updateEntry(String key, UnaryOperator<V> update) {
+        Segment<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V entry = segment.entries.get(key);
+            if (entry == null) {
+                return false;
+            }
+            segment.entries.put(key, update.apply(entry));
+            return true;
+        }
+    }
+
+    void putEntry(String key, V value) {
+        Segment<V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.entries.put(key, value);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<V> segmentFor(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static final class Segment<V> {
+
+        private final MaxSizeHashMap<String, V> entries;
+
+        private Segment(int maxSize) {
+            this.entries = new MaxSizeHashMap<>(maxSize, true);
         }
     }
 
@@ -10,8 +10,19 @@ public class MaxSizeHashMap<K, V> extends LinkedHashMap<K, V> {
         this.maxSize = maxSize;
     }
 
+    /**
+     * Creates a map that holds at most maxSize entries.
+     * @param maxSize the number of entries after which the eldest is removed
+     * @param accessOrder true to order entries by access, so the least recently
+     *                    used entry is removed, false to order them by insertion
+     */
+    public MaxSizeHashMap(int maxSize, boolean accessOrder) {
+        super(16, 0.75f, accessOrder);
+        this.maxSize = maxSize;
+    }
+
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
         return size() > maxSize;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package ai.evolv;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The touched, confirmed and contaminated flags of a participant's
+ * allocations.
+ * <p>
+ *     The flags are kept apart from the allocations' JSON, as one atomic
+ *     bitset per experiment, so the JSON is never changed once it has been
+ *     parsed. Every client of a participant shares the same flags. Flags are
+ *     only ever set, the flags read from stored allocations are merged into
+ *     the ones already known.
+ * </p>
+ */
+final class ParticipantFlags {
+
+    static final int TOUCHED = 1;
+    static final int CONFIRMED = 1 << 1;
+    static final int CONTAMINATED = 1 << 2;
+
+    static final String TOUCHED_PROPERTY = "touched";
+    static final String CONFIRMED_PROPERTY = "confirmed";
+    static final String CONTAMINATED_PROPERTY = "contaminated";
+
+    private final ConcurrentMap<String, AtomicInteger> flags = new ConcurrentHashMap<>();
+
+    /**
+     * Merges flags read from stored allocations.
+     * @param experimentId the experiment of the allocation
+     * @param storedFlags the stored flags
+     */
+    void merge(String experimentId, int storedFlags) {
+        AtomicInteger experimentFlags = flagsOf(experimentId);
+        if (storedFlags == 0 || (experimentFlags.get() & storedFlags) == storedFlags) {
+            return;
+        }
+
+        int current;
+        do {
+            current = experimentFlags.get();
+        } while (!experimentFlags.compareAndSet(current, current | storedFlags));
+    }
+
+    boolean isSet(String experimentId, int flag) {
+        AtomicInteger experimentFlags = flags.get(experimentId);
+        return experimentFlags != null && (experimentFlags.get() & flag) != 0;
+    }
+
+    /**
+     * Sets a flag unless it, or any of the excluding flags, is already set.
+     * @param experimentId the experiment of the allocation
+     * @param flag the flag to set
+     * @param excluding flags that keep the flag from being set
+     * @return true if the flag was set by this call
+     */
+    boolean mark(String experimentId, int flag, int excluding) {
+        AtomicInteger experimentFlags = flagsOf(experimentId);
+        int current;
+        do {
+            current = experimentFlags.get();
+            if ((current & (flag | excluding)) != 0) {
+                return false;
+            }
+        } while (!experimentFlags.compareAndSet(current, current | flag));
+        return true;
+    }
+
+    private AtomicInteger flagsOf(String experimentId) {
+        AtomicInteger experimentFlags = flags.get(experimentId);
+        if (experimentFlags == null) {
+            AtomicInteger created = new AtomicInteger();
+            experimentFlags = flags.putIfAbsent(experimentId, created);
+            if (experimentFlags == null) {
+                experimentFlags = created;
+            }
+        }
+        return experimentFlags;
+    }
+
+    /**
+     * The flags of every participant that has a live client.
+     * <p>
+     *     A participant's flags are held weakly, they stay registered for as long
+     *     as a client or a parsed allocation refers to them, so every client of a
+     *     participant shares one instance however many participants are active.
+     *     Once nothing refers to them they are forgotten and rebuilt from the
+     *     flags of the stored allocations when they are next needed.
+     * </p>
+     */
+    static final class Registry {
+
+        private final ConcurrentMap<String, FlagsReference> flags = new ConcurrentHashMap<>();
+        private final ReferenceQueue<ParticipantFlags> released = new ReferenceQueue<>();
+
+        /**
+         * Returns the participant's flags, registering new ones if none are live.
+         * @param uid the participant's unique id
+         * @return the participant's flags
+         */
+        ParticipantFlags get(String uid) {
+            expungeReleased();
+            while (true) {
+                FlagsReference reference = flags.get(uid);
+                ParticipantFlags participantFlags = reference == null ? null : reference.get();
+                if (participantFlags != null) {
+                    return participantFlags;
+                }
+
+                ParticipantFlags created = new ParticipantFlags();
+                FlagsReference createdReference = new FlagsReference(uid, created, released);
+                boolean registered = reference == null
+                        ? flags.putIfAbsent(uid, createdReference) == null
+                        : flags.replace(uid, reference, createdReference);
+                if (registered) {
+                    return created;
+                }
+            }
+        }
+
+        int size() {
+            expungeReleased();
+            return flags.size();
+        }
+
+        private void expungeReleased() {
+            Reference<? extends ParticipantFlags> reference;
+            while ((reference = released.poll()) != null) {
+                FlagsReference flagsReference = (FlagsReference) reference;
+                flags.remove(flagsReference.uid, flagsReference);
+            }
+        }
+    }
+
+    private static final class FlagsReference extends WeakReference<ParticipantFlags> {
+
+        private final String uid;
+
+        FlagsReference(String uid, ParticipantFlags flags,
+                       ReferenceQueue<ParticipantFlags> released) {
+            super(flags, released);
+            this.uid = uid;
+        }
+    }
+}
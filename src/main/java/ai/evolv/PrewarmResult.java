@@ -0,0 +1,48 @@
+package ai.evolv;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of pre-warming the allocations of a batch of participants.
+ * <p>
+ *     A participant is prewarmed when its allocations were fetched and stored,
+ *     or when its stored allocations were still fresh. The failure of every
+ *     other participant is kept by user id.
+ * </p>
+ */
+public final class PrewarmResult {
+
+    private final Set<String> prewarmed;
+    private final Map<String, Throwable> failures;
+
+    PrewarmResult(Set<String> prewarmed, Map<String, Throwable> failures) {
+        this.prewarmed = Collections.unmodifiableSet(prewarmed);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the user ids of the participants whose allocations are stored.
+     * @return the prewarmed user ids
+     */
+    public Set<String> getPrewarmed() {
+        return prewarmed;
+    }
+
+    /**
+     * Returns the failures of the participants that could not be prewarmed.
+     * @return the failures by user id
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns true if the allocations of every participant are stored.
+     * @return true if no participant failed
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+}
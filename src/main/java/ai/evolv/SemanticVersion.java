@@ -0,0 +1,130 @@
+package ai.evolv;
+
+import java.util.Arrays;
+
+/**
+ * A parsed semantic version used by the audience version operators.
+ * <p>
+ *     Versions are made of numeric, dot separated components with an optional
+ *     leading "v", an optional pre-release after a "-" and optional build
+ *     metadata after a "+". Missing components count as zero, so "1.2" equals
+ *     "1.2.0". A pre-release sorts before its release and build metadata is
+ *     ignored.
+ * </p>
+ */
+final class SemanticVersion implements Comparable<SemanticVersion> {
+
+    private final long[] components;
+    private final String preRelease;
+
+    private SemanticVersion(long[] components, String preRelease) {
+        this.components = components;
+        this.preRelease = preRelease;
+    }
+
+    /**
+     * Parses a version.
+     * @param version the version to parse
+     * @return the parsed version
+     * @throws IllegalArgumentException if the version is malformed
+     */
+    static SemanticVersion parse(String version) {
+        String remaining = version.trim();
+        if (remaining.startsWith("v") || remaining.startsWith("V")) {
+            remaining = remaining.substring(1);
+        }
+
+        int build = remaining.indexOf('+');
+        if (build >= 0) {
+            remaining = remaining.substring(0, build);
+        }
+
+        String preRelease = null;
+        int hyphen = remaining.indexOf('-');
+        if (hyphen >= 0) {
+            preRelease = remaining.substring(hyphen + 1);
+            remaining = remaining.substring(0, hyphen);
+        }
+
+        String[] parts = remaining.split("\\.", -1);
+        long[] components = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isEmpty()) {
+                throw new IllegalArgumentException("Malformed version: " + version);
+            }
+
+            for (int j = 0; j < parts[i].length(); j++) {
+                if (!Character.isDigit(parts[i].charAt(j))) {
+                    throw new IllegalArgumentException("Malformed version: " + version);
+                }
+            }
+            components[i] = Long.parseLong(parts[i]);
+        }
+
+        int length = components.length;
+        while (length > 1 && components[length - 1] == 0) {
+            length--;
+        }
+
+        return new SemanticVersion(Arrays.copyOf(components, length), preRelease);
+    }
+
+    @Override
+    public int compareTo(SemanticVersion other) {
+        int length = Math.max(components.length, other.components.length);
+        for (int i = 0; i < length; i++) {
+            long mine = i < components.length ? components[i] : 0;
+            long theirs = i < other.components.length ? other.components[i] : 0;
+            if (mine != theirs) {
+                return mine < theirs ? -1 : 1;
+            }
+        }
+
+        if (preRelease == null || other.preRelease == null) {
+            if (preRelease == other.preRelease) {
+                return 0;
+            }
+            return preRelease == null ? 1 : -1;
+        }
+
+        return comparePreReleases(preRelease, other.preRelease);
+    }
+
+    private static int comparePreReleases(String mine, String theirs) {
+        String[] myIdentifiers = mine.split("\\.");
+        String[] theirIdentifiers = theirs.split("\\.");
+        int length = Math.min(myIdentifiers.length, theirIdentifiers.length);
+        for (int i = 0; i < length; i++) {
+            int compared = compareIdentifiers(myIdentifiers[i], theirIdentifiers[i]);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(myIdentifiers.length, theirIdentifiers.length);
+    }
+
+    private static int compareIdentifiers(String mine, String theirs) {
+        boolean myNumeric = isNumeric(mine);
+        boolean theirNumeric = isNumeric(theirs);
+        if (myNumeric && theirNumeric) {
+            return Long.compare(Long.parseLong(mine), Long.parseLong(theirs));
+        } else if (myNumeric != theirNumeric) {
+            // numeric identifiers have lower precedence than alphanumeric ones
+            return myNumeric ? -1 : 1;
+        }
+        return Integer.signum(mine.compareTo(theirs));
+    }
+
+    private static boolean isNumeric(String identifier) {
+        if (identifier.isEmpty() || identifier.length() > 18) {
+            return false;
+        }
+
+        for (int i = 0; i < identifier.length(); i++) {
+            if (!Character.isDigit(identifier.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package ai.evolv;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An action applied by an executor, one value at a time.
+ * <p>
+ *     Values are applied in the order they were given even when the executor
+ *     has several threads. A single task drains the pending values, so a
+ *     value given while a previous one is still being applied waits for it.
+ * </p>
+ */
+class SerialAction<T> implements AscendAction<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialAction.class);
+
+    private final String key;
+    private final AscendAction<T> function;
+    private final Executor executor;
+
+    private final Queue<T> pendingValues = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Creates an action applied by an executor.
+     * @param key the subscribed key, used when logging errors
+     * @param function the action to apply
+     * @param executor the executor applying the action
+     */
+    SerialAction(String key, AscendAction<T> function, Executor executor) {
+        this.key = key;
+        this.function = function;
+        this.executor = executor;
+    }
+
+    @Override
+    public void apply(T value) {
+        pendingValues.add(value);
+        if (pendingCount.getAndIncrement() > 0) {
+            // the task already draining the values applies this one after them
+            return;
+        }
+
+        try {
+            executor.execute(this::applyPendingValues);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("The subscribed action for {} was rejected by its executor.", key, e);
+            do {
+                pendingValues.poll();
+            } while (pendingCount.decrementAndGet() > 0);
+        }
+    }
+
+    private void applyPendingValues() {
+        do {
+            try {
+                function.apply(pendingValues.poll());
+            } catch (Exception e) {
+                LOGGER.error("There was an issue while performing the subscribed action "
+                        + "for {}.", key, e);
+            }
+        } while (pendingCount.decrementAndGet() > 0);
+    }
+
+}
@@ -0,0 +1,92 @@
+package ai.evolv;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes genome values into the type requested by the caller.
+ * <p>
+ *     A single Gson instance and a per-class adapter cache are shared by every
+ *     client. Strings, booleans, integers and doubles held as plain JSON
+ *     primitives are read directly without going through Gson. A number that
+ *     is not integral or does not fit in an int is rejected rather than truncated
+ *     when an integer is requested.
+ * </p>
+ */
+final class TreatmentDecoder {
+
+    private static final Gson GSON = new Gson();
+
+    private static final ConcurrentMap<Class<?>, TypeAdapter<?>> ADAPTERS =
+            new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Class<?>> WRAPPERS = createWrappersMap();
+
+    private TreatmentDecoder() {}
+
+    private static Map<Class<?>, Class<?>> createWrappersMap() {
+        Map<Class<?>, Class<?>> wrappers = new HashMap<>();
+        wrappers.put(boolean.class, Boolean.class);
+        wrappers.put(byte.class, Byte.class);
+        wrappers.put(char.class, Character.class);
+        wrappers.put(short.class, Short.class);
+        wrappers.put(int.class, Integer.class);
+        wrappers.put(long.class, Long.class);
+        wrappers.put(float.class, Float.class);
+        wrappers.put(double.class, Double.class);
+        return wrappers;
+    }
+
+    /**
+     * Decodes a genome value.
+     * @param element the genome value
+     * @param cls the requested type
+     * @param <T> the requested type
+     * @return the decoded value, null if the element is a JSON null
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T decode(JsonElement element, Class<T> cls) {
+        Class<T> type = (Class<T>) WRAPPERS.getOrDefault(cls, cls);
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (type == String.class && primitive.isString()) {
+                return (T) primitive.getAsString();
+            } else if (type == Boolean.class && primitive.isBoolean()) {
+                return (T) Boolean.valueOf(primitive.getAsBoolean());
+            } else if (type == Integer.class && primitive.isNumber()) {
+                return (T) Integer.valueOf(toInt(primitive));
+            } else if (type == Double.class && primitive.isNumber()) {
+                return (T) Double.valueOf(primitive.getAsDouble());
+            }
+        }
+
+        TypeAdapter<T> adapter = (TypeAdapter<T>) ADAPTERS.computeIfAbsent(type, GSON::getAdapter);
+        return adapter.fromJsonTree(element);
+    }
+
+    private static int toInt(JsonPrimitive primitive) {
+        try {
+            return primitive.getAsBigDecimal().intValueExact();
+        } catch (ArithmeticException e) {
+            throw new JsonSyntaxException("Expected an int but was " + primitive.getAsString(), e);
+        }
+    }
+
+    /**
+     * Whether values of the type can be shared between callers.
+     * @param cls the requested type
+     * @return true if decoded values of the type are immutable
+     */
+    static boolean isImmutable(Class<?> cls) {
+        return cls.isPrimitive() || cls.isEnum() || cls == String.class
+                || WRAPPERS.containsValue(cls);
+    }
+}
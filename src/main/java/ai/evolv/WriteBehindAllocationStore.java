@@ -0,0 +1,228 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the writes to an allocation store and applies them from a
+ * background thread.
+ * <p>
+ *     Only the latest allocations of each participant are kept, so repeated
+ *     puts for the same uid between two flushes cost a single write to the
+ *     wrapped store. Pending allocations are written once batchSize
+ *     participants are waiting or once maxStaleness has passed, and they are
+ *     served from the buffer until then. Writes that fail are kept and
+ *     retried on the next flush. A flag for a participant with pending
+ *     allocations is recorded next to them and set on a copy when they are
+ *     read or written, otherwise it is passed to the wrapped store.
+ * </p>
+ * <p>
+ *     Closing the store writes the pending allocations. Puts made after it
+ *     has been closed go straight to the wrapped store, which is not closed.
+ * </p>
+ */
+public class WriteBehindAllocationStore implements AscendAllocationStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindAllocationStore.class);
+
+    private final AscendAllocationStore store;
+    private final int batchSize;
+    private final long maxStalenessMillis;
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Object signal = new Object();
+    private final Object flushLock = new Object();
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /**
+     * Wraps an allocation store.
+     * @param store the allocation store to write to
+     * @param batchSize the number of pending participants after which they are written
+     * @param maxStaleness the longest time a put waits to be written
+     * @param unit the unit of maxStaleness
+     */
+    public WriteBehindAllocationStore(AscendAllocationStore store, int batchSize,
+                                      long maxStaleness, TimeUnit unit) {
+        if (batchSize <= 0 || maxStaleness <= 0) {
+            throw new IllegalArgumentException("The batch size and the maximum staleness must "
+                    + "be positive.");
+        }
+        this.store = store;
+        this.batchSize = batchSize;
+        this.maxStalenessMillis = Math.max(1, unit.toMillis(maxStaleness));
+        this.writer = new Thread(this::run, "ascend-allocation-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public JsonArray get(String uid) {
+        Pending allocations = pending.get(uid);
+        return allocations != null ? allocations.getAllocations() : store.get(uid);
+    }
+
+    @Override
+    public void put(String uid, JsonArray allocations) {
+        if (!running) {
+            store.put(uid, allocations);
+            return;
+        }
+
+        pending.put(uid, new Pending(allocations));
+        if (!running) {
+            // the writer may have stopped before the allocations were buffered
+            flush();
+        } else if (pending.size() >= batchSize) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void putFlag(String uid, String experimentId, String flag) {
+        Pending flagged = pending.computeIfPresent(uid, (key, entry) -> entry.withFlag(experimentId,
+                flag));
+
+        if (flagged == null) {
+            store.putFlag(uid, experimentId, flag);
+        } else if (!running) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending allocations to the wrapped store on the calling thread.
+     * @return true if every pending allocation was written
+     */
+    public boolean flush() {
+        boolean written = true;
+        synchronized (flushLock) {
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                try {
+                    store.put(entry.getKey(), entry.getValue().getAllocations());
+                    // a newer put for the uid stays pending
+                    pending.remove(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    written = false;
+                    LOGGER.error("Unable to write the allocations of {}, they will be "
+                            + "retried.", entry.getKey(), e);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Stops the background writer and writes the pending allocations.
+     * @param timeout how long to wait for the pending allocations to be written
+     * @param unit the unit of the timeout
+     * @return true if every pending allocation was written before the timeout
+     */
+    @Override
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        // not interrupted, an interrupt would close a wrapped store's file channels
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            writer.join(Math.max(1, unit.toMillis(timeout)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive() && pending.isEmpty();
+    }
+
+    /**
+     * Stops the background writer and waits for the pending allocations to
+     * be written.
+     */
+    @Override
+    public void close() {
+        shutdown(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private void run() {
+        boolean written = true;
+        while (running) {
+            try {
+                synchronized (signal) {
+                    // after a failed write wait before retrying even if the batch is full
+                    if (running && (!written || pending.size() < batchSize)) {
+                        signal.wait(maxStalenessMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            written = flush();
+        }
+        flush();
+    }
+
+    private static final class Pending {
+
+        private static final String[] NO_FLAGS = {};
+
+        private final JsonArray allocations;
+        // experiment ids and flags in pairs
+        private final String[] flags;
+        private volatile JsonArray flagged;
+
+        private Pending(JsonArray allocations) {
+            this(allocations, NO_FLAGS);
+        }
+
+        private Pending(JsonArray allocations, String[] flags) {
+            this.allocations = allocations;
+            this.flags = flags;
+        }
+
+        JsonArray getAllocations() {
+            if (flags.length == 0) {
+                return allocations;
+            }
+
+            JsonArray copy = flagged;
+            if (copy == null) {
+                // the pending allocations may be in use, the flags are set on a copy,
+                // concurrent callers may each copy and any of the copies is correct
+                copy = allocations.deepCopy();
+                for (int i = 0; i < flags.length; i += 2) {
+                    Allocations.setFlag(copy, flags[i], flags[i + 1]);
+                }
+                flagged = copy;
+            }
+            return copy;
+        }
+
+        Pending withFlag(String experimentId, String flag) {
+            for (int i = 0; i < flags.length; i += 2) {
+                if (flags[i].equals(experimentId) && flags[i + 1].equals(flag)) {
+                    return this;
+                }
+            }
+
+            String[] appended = Arrays.copyOf(flags, flags.length + 2);
+            appended[flags.length] = experimentId;
+            appended[flags.length + 1] = flag;
+            return new Pending(allocations, appended);
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package ai.evolv.exceptions;
 
+/**
+ * Signals that no value could be retrieved for a key.
+ * <p>
+ *     The SDK reports missing keys internally without exceptions. The error
+ *     carries no stack trace, its message identifies the key, so creating it
+ *     costs no more than the message.
+ * </p>
+ */
 public class AscendKeyError extends Exception {
     public AscendKeyError(String errorMessage) {
-        super(errorMessage);
+        super(errorMessage, null, false, false);
     }
 }
@@ -5,6 +5,7 @@ import static org.asynchttpclient.Dsl.config;
 
 import ai.evolv.HttpClient;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -77,14 +78,29 @@ public class AsyncHttpClient implements HttpClient {
         return getStringCompletableFuture(url, httpClient);
     }
 
+    /**
+     * Performs a GET request with the given url using the client from
+     * org.asynchttpclient, without decoding the response body.
+     * @param url a valid url representing a call to the Participant API.
+     * @return a Completable future instance containing the raw response
+     *     body from the API
+     */
+    @Override
+    public CompletableFuture<byte[]> getBytes(String url) {
+        return getCompletableFuture(url, httpClient, new BytesReader());
+    }
+
     protected static CompletableFuture<String> getStringCompletableFuture(
         String url, org.asynchttpclient.AsyncHttpClient httpClient) {
-        final CompletableFuture<String> responseFuture = new CompletableFuture<>();
+        return getCompletableFuture(url, httpClient, new StringReader());
+    }
 
-        StringBuilder chunks = new StringBuilder();
+    private static <T> CompletableFuture<T> getCompletableFuture(
+        String url, org.asynchttpclient.AsyncHttpClient httpClient, BodyReader<T> bodyReader) {
+        final CompletableFuture<T> responseFuture = new CompletableFuture<>();
 
         httpClient.prepareGet(url)
-            .execute(new AsyncHandler<String>() {
+            .execute(new AsyncHandler<T>() {
                 @Override
                 public State onStatusReceived(HttpResponseStatus responseStatus)
                     throws Exception {
@@ -102,16 +118,13 @@ public class AsyncHttpClient implements HttpClient {
 
                 @Override
                 public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
-                    String chunk = new String(bodyPart.getBodyPartBytes()).trim();
-                    if (chunk.length() != 0) {
-                        chunks.append(chunk);
-                    }
+                    bodyReader.append(bodyPart.getBodyPartBytes());
                     return State.CONTINUE;
                 }
 
                 @Override
-                public String onCompleted() {
-                    String response = chunks.toString();
+                public T onCompleted() {
+                    T response = bodyReader.read();
                     responseFuture.complete(response);
                     return response;
                 }
@@ -125,4 +138,45 @@ public class AsyncHttpClient implements HttpClient {
         return responseFuture;
     }
 
+    /**
+     * Collects the parts of a response body.
+     */
+    private interface BodyReader<T> {
+        void append(byte[] bodyPart);
+
+        T read();
+    }
+
+    private static final class BytesReader implements BodyReader<byte[]> {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public void append(byte[] bodyPart) {
+            body.write(bodyPart, 0, bodyPart.length);
+        }
+
+        @Override
+        public byte[] read() {
+            return body.toByteArray();
+        }
+    }
+
+    private static final class StringReader implements BodyReader<String> {
+
+        private final StringBuilder chunks = new StringBuilder();
+
+        @Override
+        public void append(byte[] bodyPart) {
+            String chunk = new String(bodyPart).trim();
+            if (chunk.length() != 0) {
+                chunks.append(chunk);
+            }
+        }
+
+        @Override
+        public String read() {
+            return chunks.toString();
+        }
+    }
 }
@@ -69,9 +69,26 @@ public class OkHttpClient implements HttpClient {
         return getStringCompletableFuture(url, httpClient);
     }
 
+    /**
+     * Performs a GET request with the given url using the httpClient from
+     * okhttp3, without decoding the response body.
+     * @param url a valid url representing a call to the Participant API.
+     * @return a Completable future instance containing the raw response
+     *     body from the API
+     */
+    @Override
+    public CompletableFuture<byte[]> getBytes(String url) {
+        return getCompletableFuture(url, httpClient, ResponseBody::bytes, new byte[0]);
+    }
+
     protected static CompletableFuture<String> getStringCompletableFuture(
         String url, okhttp3.OkHttpClient httpClient) {
-        CompletableFuture<String> responseFuture = new CompletableFuture<>();
+        return getCompletableFuture(url, httpClient, ResponseBody::string, "");
+    }
+
+    private static <T> CompletableFuture<T> getCompletableFuture(
+        String url, okhttp3.OkHttpClient httpClient, BodyReader<T> bodyReader, T emptyBody) {
+        CompletableFuture<T> responseFuture = new CompletableFuture<>();
         final Request request = new Request.Builder()
             .url(url)
             .build();
@@ -84,19 +101,16 @@ public class OkHttpClient implements HttpClient {
 
             @Override
             public void onResponse(Call call, Response response) {
-                String body = "";
                 try (ResponseBody responseBody = response.body()) {
-                    if (responseBody != null) {
-                        body = responseBody.string();
-                    }
-
                     if (!response.isSuccessful()) {
+                        String body = responseBody == null ? "" : responseBody.string();
                         throw new IOException(String.format("Unexpected response "
                                 + "when making GET request: %s using url: %s with body: %s",
                             response, request.url(), body));
                     }
 
-                    responseFuture.complete(body);
+                    responseFuture.complete(responseBody == null
+                        ? emptyBody : bodyReader.read(responseBody));
                 } catch (Exception e) {
                     responseFuture.completeExceptionally(e);
                 }
@@ -105,4 +119,9 @@ public class OkHttpClient implements HttpClient {
 
         return responseFuture;
     }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(ResponseBody responseBody) throws IOException;
+    }
 }
@@ -0,0 +1,89 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllocationCodecTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+    private static final String rawMultiAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false,\"touched\":true,\"confirmed\":false,\"fetched_at\":1545234000000},{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid_2\",\"cid\":\"test_cid_2\",\"genome\":{\"best\":{\"baked\":{\"cookie\":true,\"cake\":false}},\"utensils\":{\"knives\":{\"drawer\":[\"butcher\",\"paring\"]},\"spoons\":{\"wooden\":\"oak\",\"metal\":\"steel\"}},\"measure\":{\"cups\":2.0}},\"excluded\":false,\"audience_query\":{\"combinator\":\"and\",\"rules\":[{\"field\":\"country\",\"operator\":\"kv_equal\",\"value\":[\"country\",\"us\"]}]}}]";
+
+    private static JsonArray parse(String raw) {
+        return new JsonParser().parse(raw).getAsJsonArray();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        JsonArray allocations = parse(rawAllocation);
+        Assert.assertEquals(allocations,
+                AllocationCodec.decode(AllocationCodec.encode(allocations)));
+    }
+
+    @Test
+    public void testRoundTripMultipleAllocations() {
+        JsonArray allocations = parse(rawMultiAllocation);
+        JsonArray decoded = AllocationCodec.decode(AllocationCodec.encode(allocations));
+
+        Assert.assertEquals(allocations, decoded);
+        JsonObject second = decoded.get(1).getAsJsonObject();
+        Assert.assertEquals("oak", second.getAsJsonObject("genome").getAsJsonObject("utensils")
+                .getAsJsonObject("spoons").get("wooden").getAsString());
+        Assert.assertEquals(1545234000000L, decoded.get(0).getAsJsonObject()
+                .get("fetched_at").getAsLong());
+    }
+
+    @Test
+    public void testRoundTripValues() {
+        String raw = "[{\"eid\":\"e\",\"genome\":{\"empty\":{},\"nothing\":null,\"negative\":-42,"
+                + "\"large\":9007199254740993,\"fraction\":-0.125,\"exponent\":1.5e300,"
+                + "\"nested\":[[1,2],{\"a\":\"b\"}],\"text\":\"caf\u00e9 \u2713\"},"
+                + "\"excluded\":\"maybe\",\"extra\":{\"x\":[true,false]}}]";
+        JsonArray allocations = parse(raw);
+        JsonArray decoded = AllocationCodec.decode(AllocationCodec.encode(allocations));
+
+        Assert.assertEquals(allocations, decoded);
+        JsonObject genome = decoded.get(0).getAsJsonObject().getAsJsonObject("genome");
+        Assert.assertEquals(9007199254740993L, genome.get("large").getAsLong());
+        Assert.assertEquals(1.5e300, genome.get("exponent").getAsDouble(), 0);
+        Assert.assertEquals("caf\u00e9 \u2713", genome.get("text").getAsString());
+    }
+
+    @Test
+    public void testRoundTripEmptyArray() {
+        Assert.assertEquals(new JsonArray(), AllocationCodec.decode(
+                AllocationCodec.encode(new JsonArray())));
+    }
+
+    @Test
+    public void testEncodingIsSmallerThanJson() {
+        JsonArray allocations = parse(rawMultiAllocation);
+        int jsonLength = allocations.toString().getBytes(StandardCharsets.UTF_8).length;
+        Assert.assertTrue(AllocationCodec.encode(allocations).length < jsonLength);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeRejectsNonObjects() {
+        AllocationCodec.encode(parse("[\"not an allocation\"]"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeRejectsUnknownVersion() {
+        byte[] encoded = AllocationCodec.encode(parse(rawAllocation));
+        encoded[0] = 99;
+        AllocationCodec.decode(encoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeRejectsTruncatedBytes() {
+        byte[] encoded = AllocationCodec.encode(parse(rawAllocation));
+        byte[] truncated = new byte[encoded.length - 3];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        AllocationCodec.decode(truncated);
+    }
+}
@@ -0,0 +1,140 @@
+package ai.evolv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllocationPrewarmerTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    private static List<AscendParticipant> participants(int count) {
+        List<AscendParticipant> participants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            participants.add(AscendParticipant.builder().setUserId("user_" + i).build());
+        }
+        return participants;
+    }
+
+    private static String userId(String url) {
+        int start = url.indexOf("uid=") + 4;
+        return url.substring(start, url.indexOf('&', start));
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        Map<String, CompletableFuture<String>> requests = new ConcurrentHashMap<>();
+        HttpClient httpClient = url -> requests.computeIfAbsent(userId(url),
+            uid -> new CompletableFuture<>());
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setAllocationFreshness(1, TimeUnit.HOURS)
+                .build();
+
+        CompletableFuture<PrewarmResult> result = AscendClientFactory.prewarm(config,
+                participants(10), 3);
+
+        Assert.assertEquals(3, requests.size());
+        int completed = 0;
+        while (completed < 10) {
+            Assert.assertTrue(requests.size() - completed <= 3);
+            Assert.assertFalse(result.isDone());
+            requests.get("user_" + completed).complete(rawAllocation);
+            completed++;
+        }
+
+        PrewarmResult outcome = result.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(outcome.isComplete());
+        Assert.assertEquals(10, outcome.getPrewarmed().size());
+        Assert.assertEquals(1, config.getAscendAllocationStore().get("user_9").size());
+    }
+
+    @Test
+    public void testFailuresAreReportedPerParticipant() throws Exception {
+        HttpClient httpClient = url -> {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            if (userId(url).equals("user_1")) {
+                response.completeExceptionally(new IllegalStateException("unavailable"));
+            } else {
+                response.complete(rawAllocation);
+            }
+            return response;
+        };
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient).build();
+
+        PrewarmResult outcome = AscendClientFactory.prewarm(config, participants(3))
+                .get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(outcome.isComplete());
+        Assert.assertEquals(2, outcome.getPrewarmed().size());
+        Assert.assertTrue(outcome.getFailures().get("user_1") instanceof IllegalStateException);
+        Assert.assertEquals(0, config.getAscendAllocationStore().get("user_1").size());
+    }
+
+    @Test
+    public void testSynchronousResponsesDoNotRecurse() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpClient httpClient = url -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(rawAllocation);
+        };
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setDefaultAllocationStoreSize(20000)
+                .build();
+
+        PrewarmResult outcome = AscendClientFactory.prewarm(config, participants(20000), 1)
+                .get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(20000, outcome.getPrewarmed().size());
+        Assert.assertEquals(20000, requests.get());
+    }
+
+    @Test
+    public void testPrewarmedParticipantsAreServedLocally() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpClient httpClient = url -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(rawAllocation);
+        };
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setAllocationFreshness(1, TimeUnit.HOURS)
+                .build();
+        List<AscendParticipant> participants = participants(2);
+        AscendClientFactory.prewarm(config, participants).get(5, TimeUnit.SECONDS);
+
+        AscendClient client = AscendClientFactory.init(config, participants.get(0));
+        PrewarmResult outcome = AscendClientFactory.prewarm(config, participants)
+                .get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2.5, client.get("search.weighting.distance", 0.0), 0);
+        Assert.assertEquals(2, outcome.getPrewarmed().size());
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testNoParticipants() throws Exception {
+        AscendConfig config = AscendConfig.builder(environmentId,
+            url -> new CompletableFuture<>()).build();
+
+        PrewarmResult outcome = AscendClientFactory.prewarm(config,
+                Collections.<AscendParticipant>emptyList()).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(outcome.isComplete());
+        Assert.assertTrue(outcome.getPrewarmed().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency() {
+        AscendConfig config = AscendConfig.builder(environmentId,
+            url -> new CompletableFuture<>()).build();
+        AscendClientFactory.prewarm(config, participants(1), 0);
+    }
+}
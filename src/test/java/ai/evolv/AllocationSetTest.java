@@ -0,0 +1,175 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AllocationSetTest {
+
+    private static final String rawMultiAllocationWithDups = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}," +
+            "{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid_2\",\"cid\":\"test_cid_2\",\"genome\":{\"best\":{\"baked\":{\"cookie\":true,\"cake\":false}},\"utensils\":{\"knives\":{\"drawer\":[\"butcher\",\"paring\"]},\"spoons\":{\"wooden\":\"oak\",\"metal\":\"steel\"}},\"algorithms\":{\"feature_importance\":true}},\"excluded\":false}]";
+    private static final String rawAllocationWithDottedName = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search.weighting\":{\"distance\":2.5}},\"excluded\":false}]";
+    private static final String rawAllocationWithAudienceQuery = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"audience_query\":{\"combinator\":\"and\",\"rules\":[{\"value\":[\"country\",\"us\"],\"operator\":\"kv_equal\",\"field\":\"user_attributes\"}]},\"excluded\":false}," +
+            "{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid_2\",\"cid\":\"test_cid_2\",\"genome\":{\"search\":{\"weighting\":{\"distance\":3.5}}},\"excluded\":true}]";
+    private static final String rawAllocationWithoutGenome = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"excluded\":false}]";
+
+    private JsonArray parseRawAllocations(String raw) {
+        return new JsonParser().parse(raw).getAsJsonArray();
+    }
+
+    @Test
+    public void testLookupLeaf() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        AllocationSet.Candidate[] candidates = allocationSet.lookup("search.weighting.distance");
+        Assert.assertEquals(1, candidates.length);
+        Assert.assertEquals(new JsonPrimitive(2.5), candidates[0].getValue());
+        Assert.assertEquals("test_eid", candidates[0].getAllocation().getExperimentId());
+    }
+
+    @Test
+    public void testLookupIntermediateNode() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        AllocationSet.Candidate[] candidates = allocationSet.lookup("best.baked");
+        Assert.assertEquals(1, candidates.length);
+        Assert.assertTrue(candidates[0].getValue().isJsonObject());
+        Assert.assertTrue(candidates[0].getValue().getAsJsonObject().get("cookie").getAsBoolean());
+    }
+
+    @Test
+    public void testLookupKeepsAllocationOrder() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        AllocationSet.Candidate[] candidates = allocationSet.lookup("algorithms.feature_importance");
+        Assert.assertEquals(2, candidates.length);
+        Assert.assertEquals("test_eid", candidates[0].getAllocation().getExperimentId());
+        Assert.assertFalse(candidates[0].getValue().getAsBoolean());
+        Assert.assertEquals("test_eid_2", candidates[1].getAllocation().getExperimentId());
+        Assert.assertTrue(candidates[1].getValue().getAsBoolean());
+    }
+
+    @Test
+    public void testLookupMissingKey() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        Assert.assertEquals(0, allocationSet.lookup("not.a.real.key").length);
+        Assert.assertEquals(0, allocationSet.lookup("").length);
+    }
+
+    @Test
+    public void testDottedGenomeNamesAreNotIndexed() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawAllocationWithDottedName));
+        Assert.assertEquals(0, allocationSet.lookup("search.weighting").length);
+        Assert.assertEquals(0, allocationSet.lookup("search.weighting.distance").length);
+    }
+
+    @Test
+    public void testAllocationWithoutGenome() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawAllocationWithoutGenome));
+        Assert.assertEquals(0, allocationSet.lookup("search").length);
+        Assert.assertEquals(1, allocationSet.getActiveExperiments().size());
+    }
+
+    @Test
+    public void testGetActiveExperiments() {
+        JsonArray allocations = parseRawAllocations(rawMultiAllocationWithDups);
+        AllocationSet allocationSet = AllocationSet.parse(allocations);
+        Set<String> expected = new HashSet<>();
+        expected.add("test_eid");
+        expected.add("test_eid_2");
+        Assert.assertEquals(expected, allocationSet.getActiveExperiments());
+        Assert.assertSame(allocations, allocationSet.getSource());
+    }
+
+    @Test
+    public void testDecodeMemoizesImmutableValues() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        AllocationSet.Candidate candidate = allocationSet.lookup("search.weighting.distance")[0];
+        Double first = candidate.decode(Double.class);
+        Assert.assertEquals(2.5, first, 0);
+        Assert.assertSame(first, candidate.decode(Double.class));
+    }
+
+    @Test
+    public void testDecodeDoesNotShareMutableValues() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocationWithDups));
+        AllocationSet.Candidate candidate =
+                allocationSet.lookup("pages.all_pages.header_footer")[0];
+        List first = candidate.decode(List.class);
+        Assert.assertEquals(first, candidate.decode(List.class));
+        Assert.assertNotSame(first, candidate.decode(List.class));
+    }
+
+    @Test
+    public void testIsFiltered() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawAllocationWithAudienceQuery));
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Assert.assertEquals(2, allocationSet.size());
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+        Assert.assertTrue(allocationSet.isFiltered(1, AttributesSnapshot.of(userAttributes)));
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(null)));
+    }
+
+    @Test
+    public void testIsFilteredRecomputedWhenUserAttributesChange() {
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawAllocationWithAudienceQuery));
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+
+        userAttributes.put("country", "uk");
+        Assert.assertTrue(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+
+        userAttributes.put("country", "us");
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+    }
+
+    @Test
+    public void testIsFilteredReusesVerdictsForEqualSnapshots() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        AllocationSet allocationSet = AllocationSet.parse(
+                parseRawAllocations(rawAllocationWithAudienceQuery), new ParticipantFlags(),
+                metrics);
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        AttributesSnapshot snapshot = AttributesSnapshot.of(userAttributes);
+        Assert.assertFalse(allocationSet.isFiltered(0, snapshot));
+        Assert.assertTrue(allocationSet.isFiltered(1, snapshot));
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+
+        Assert.assertEquals(1, metrics.getHistogram(AscendMetrics.Timer.AUDIENCE_EVALUATION)
+                .getCount());
+    }
+
+    @Test
+    public void testMalformedAudienceQueryFiltersParticipant() {
+        JsonArray allocations = parseRawAllocations(rawAllocationWithAudienceQuery);
+        allocations.get(0).getAsJsonObject().getAsJsonObject("audience_query")
+                .remove("combinator");
+        AllocationSet allocationSet = AllocationSet.parse(allocations);
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Assert.assertTrue(allocationSet.isFiltered(0, AttributesSnapshot.of(userAttributes)));
+        Assert.assertFalse(allocationSet.isFiltered(0, AttributesSnapshot.of(new HashMap<>())));
+    }
+}
@@ -0,0 +1,103 @@
+package ai.evolv;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AllocationTest {
+
+    private static final String rawAllocation = "{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"audience_query\":{\"combinator\":\"and\",\"rules\":[{\"value\":[\"country\",\"us\"],\"operator\":\"kv_equal\",\"field\":\"user_attributes\"}]},\"excluded\":false}";
+
+    private JsonObject parseRawAllocation(String raw) {
+        return new JsonParser().parse(raw).getAsJsonObject();
+    }
+
+    @Test
+    public void testParse() {
+        Allocation allocation = Allocation.parse(parseRawAllocation(rawAllocation));
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Assert.assertEquals("test_eid", allocation.getExperimentId());
+        Assert.assertEquals("test_cid", allocation.getCandidateId());
+        Assert.assertTrue(allocation.getGenome().has("search"));
+        Assert.assertTrue(allocation.getAudienceQuery().test(userAttributes));
+        Assert.assertFalse(allocation.isExcluded());
+        Assert.assertFalse(allocation.isTouched());
+        Assert.assertFalse(allocation.isConfirmed());
+        Assert.assertFalse(allocation.isContaminated());
+    }
+
+    @Test
+    public void testParseWithoutOptionalFields() {
+        Allocation allocation = Allocation.parse(parseRawAllocation("{\"eid\":\"test_eid\"}"));
+
+        Assert.assertNull(allocation.getCandidateId());
+        Assert.assertNull(allocation.getGenome());
+        Assert.assertNull(allocation.getAudienceQuery());
+        Assert.assertFalse(allocation.isExcluded());
+    }
+
+    @Test
+    public void testParseStoredFlags() {
+        JsonObject rawStoredAllocation = parseRawAllocation(rawAllocation);
+        rawStoredAllocation.addProperty("touched", true);
+        rawStoredAllocation.addProperty("contaminated", true);
+        rawStoredAllocation.addProperty("excluded", true);
+
+        Allocation allocation = Allocation.parse(rawStoredAllocation);
+
+        Assert.assertTrue(allocation.isTouched());
+        Assert.assertFalse(allocation.isConfirmed());
+        Assert.assertTrue(allocation.isContaminated());
+        Assert.assertTrue(allocation.isExcluded());
+    }
+
+    @Test
+    public void testMarkFlagsOnce() {
+        JsonObject source = parseRawAllocation(rawAllocation);
+        Allocation allocation = Allocation.parse(source);
+
+        Assert.assertTrue(allocation.markTouched());
+        Assert.assertFalse(allocation.markTouched());
+        Assert.assertTrue(allocation.markConfirmed());
+        Assert.assertTrue(allocation.isTouched());
+        Assert.assertTrue(allocation.isConfirmed());
+        Assert.assertFalse(allocation.isContaminated());
+
+        Assert.assertFalse(allocation.markConfirmed());
+        Assert.assertFalse(allocation.markContaminated());
+
+        // the JSON is left as it was parsed
+        Assert.assertEquals(parseRawAllocation(rawAllocation), source);
+    }
+
+    @Test
+    public void testFlagsAreSharedByReparsedAllocations() {
+        ParticipantFlags flags = new ParticipantFlags();
+        Allocation allocation = Allocation.parse(parseRawAllocation(rawAllocation), flags);
+        Assert.assertTrue(allocation.markContaminated());
+
+        Allocation reparsed = Allocation.parse(parseRawAllocation(rawAllocation), flags);
+
+        Assert.assertTrue(reparsed.isContaminated());
+        Assert.assertFalse(reparsed.markConfirmed());
+    }
+
+    @Test
+    public void testMalformedAudienceQueryFiltersEveryone() {
+        JsonObject source = parseRawAllocation(rawAllocation);
+        source.getAsJsonObject("audience_query").remove("combinator");
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Allocation allocation = Allocation.parse(source);
+
+        Assert.assertFalse(allocation.getAudienceQuery().test(userAttributes));
+    }
+}
@@ -0,0 +1,54 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class AllocationsDecoderTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+
+    private static byte[] encode(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDecode() {
+        JsonArray allocations = AllocationsDecoder.decode(encode(rawAllocation));
+        Assert.assertEquals(new JsonParser().parse(rawAllocation), allocations);
+    }
+
+    @Test
+    public void testDecodeMultiByteCharacters() {
+        String rawAllocationWithAccents = rawAllocation.replace("white", "blanc cass\u00e9 \u2713");
+        JsonArray allocations = AllocationsDecoder.decode(encode(rawAllocationWithAccents));
+        Assert.assertEquals("blanc cass\u00e9 \u2713", allocations.get(0).getAsJsonObject()
+                .getAsJsonObject("genome").getAsJsonObject("pages")
+                .getAsJsonObject("testing_page").get("header").getAsString());
+    }
+
+    @Test
+    public void testDecodeEmptyArray() {
+        Assert.assertEquals(new JsonArray(), AllocationsDecoder.decode(encode("[]")));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testDecodeObject() {
+        AllocationsDecoder.decode(encode("{\"eid\":\"test_eid\"}"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testDecodeTrailingContent() {
+        AllocationsDecoder.decode(encode("[] []"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testDecodeMalformedBody() {
+        AllocationsDecoder.decode(encode("[{\"eid\":"));
+    }
+}
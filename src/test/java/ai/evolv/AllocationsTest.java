@@ -1,16 +1,20 @@
 package ai.evolv;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import org.junit.Assert;
 import org.junit.Test;
 
-import ai.evolv.exceptions.AscendKeyError;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+import static org.mockito.Mockito.*;
+
 public class AllocationsTest {
 
     private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
@@ -27,53 +31,120 @@ public class AllocationsTest {
 
     @Test
     public void testGetValueFromAllocationGenome() {
-        try {
-            AscendParticipant participant = AscendParticipant.builder().build();
-            Allocations allocations = new Allocations(parseRawAllocations(rawAllocation),
-                    new DefaultAllocationStore(10));
-            Boolean featureImportance = allocations.getValueFromAllocations("algorithms.feature_importance",
-                    Boolean.class, participant);
-            Assert.assertEquals(featureImportance, false);
-            double weightingDistance = allocations.getValueFromAllocations("search.weighting.distance",
-                    double.class, participant);
-            Assert.assertEquals(weightingDistance, 2.5, 0);
-        } catch (AscendKeyError e) {
-            Assert.fail(e.getMessage());
-        }
+        AscendParticipant participant = AscendParticipant.builder().build();
+        Allocations allocations = new Allocations(parseRawAllocations(rawAllocation),
+                new DefaultAllocationStore(10));
+        Boolean featureImportance = allocations.lookupValue("algorithms.feature_importance",
+                Boolean.class, participant).get();
+        Assert.assertEquals(featureImportance, false);
+        double weightingDistance = allocations.lookupValue("search.weighting.distance",
+                double.class, participant).get();
+        Assert.assertEquals(weightingDistance, 2.5, 0);
     }
 
     @Test
     public void testGetValueFromMultiAllocationGenome() {
-        try {
-            AscendParticipant participant = AscendParticipant.builder().build();
-            Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocation),
-                    new DefaultAllocationStore(10));
-            Boolean featureImportance = allocations.getValueFromAllocations("algorithms.feature_importance",
-                    Boolean.class, participant);
-            Assert.assertEquals(featureImportance, false);
-            double weightingDistance = allocations.getValueFromAllocations("search.weighting.distance",
-                    double.class, participant);
-            Assert.assertEquals(weightingDistance, 2.5, 0);
-        } catch (AscendKeyError e) {
-            Assert.fail(e.getMessage());
-        }
+        AscendParticipant participant = AscendParticipant.builder().build();
+        Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocation),
+                new DefaultAllocationStore(10));
+        Boolean featureImportance = allocations.lookupValue("algorithms.feature_importance",
+                Boolean.class, participant).get();
+        Assert.assertEquals(featureImportance, false);
+        double weightingDistance = allocations.lookupValue("search.weighting.distance",
+                double.class, participant).get();
+        Assert.assertEquals(weightingDistance, 2.5, 0);
     }
 
     @Test
     public void testGetValueFromMultiAllocationWithDupsGenome() {
-        try{
-            AscendParticipant participant = AscendParticipant.builder().build();
-            Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocationWithDups),
-                    new DefaultAllocationStore(10));
-            Boolean featureImportance = allocations.getValueFromAllocations("algorithms.feature_importance",
-                    Boolean.class, participant);
-            Assert.assertFalse(featureImportance);
-            double weightingDistance = allocations.getValueFromAllocations("search.weighting.distance",
-                    double.class, participant);
-            Assert.assertEquals(weightingDistance, 2.5, 0);
-        } catch (AscendKeyError e) {
-            Assert.fail(e.getMessage());
-        }
+        AscendParticipant participant = AscendParticipant.builder().build();
+        Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocationWithDups),
+                new DefaultAllocationStore(10));
+        Boolean featureImportance = allocations.lookupValue("algorithms.feature_importance",
+                Boolean.class, participant).get();
+        Assert.assertFalse(featureImportance);
+        double weightingDistance = allocations.lookupValue("search.weighting.distance",
+                double.class, participant).get();
+        Assert.assertEquals(weightingDistance, 2.5, 0);
+    }
+
+    @Test
+    public void testLookupMissingKeyIsEmpty() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendAllocationStore store = mock(AscendAllocationStore.class);
+        Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocation), store);
+
+        Assert.assertFalse(allocations.lookupValue("not.a.real.key", String.class, participant)
+                .isPresent());
+        verify(store, never()).putFlag(any(), any(), any());
+    }
+
+    @Test
+    public void testLookupFilteredKeyIsEmpty() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        JsonArray rawAllocations = parseRawAllocations(rawAllocation);
+        rawAllocations.get(0).getAsJsonObject().addProperty("excluded", true);
+        Allocations allocations = new Allocations(rawAllocations, new DefaultAllocationStore(10));
+
+        Assert.assertFalse(allocations.lookupValue("search.weighting.distance", Double.class,
+                participant).isPresent());
+    }
+
+    @Test
+    public void testGetValueFromAllocationsStoresOnlyWhenNewlyTouched() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendAllocationStore store = mock(AscendAllocationStore.class);
+        JsonArray rawAllocations = parseRawAllocations(rawAllocation);
+        Allocations allocations = new Allocations(rawAllocations, store);
+
+        allocations.lookupValue("algorithms.feature_importance", Boolean.class, participant);
+        allocations.lookupValue("search.weighting.distance", Double.class, participant);
+
+        verify(store, times(1)).putFlag(participant.getUserId(), "test_eid", "touched");
+        verify(store, never()).put(any(), any());
+    }
+
+    @Test
+    public void testGetValuesFromMultiAllocationGenome() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendAllocationStore store = mock(AscendAllocationStore.class);
+        ParticipantFlags flags = new ParticipantFlags();
+        Allocations allocations = new Allocations(AllocationSet.parse(
+                parseRawAllocations(rawMultiAllocation), flags), store);
+
+        Map<String, Object> keysWithDefaults = new HashMap<>();
+        keysWithDefaults.put("algorithms.feature_importance", true);
+        keysWithDefaults.put("search.weighting.distance", 0.0);
+        keysWithDefaults.put("utensils.spoons.wooden", "none");
+        keysWithDefaults.put("not.a.real.key", "none");
+
+        Map<String, Object> values = allocations.getValuesFromAllocations(keysWithDefaults,
+                participant);
+
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals(false, values.get("algorithms.feature_importance"));
+        Assert.assertEquals(2.5, values.get("search.weighting.distance"));
+        Assert.assertEquals("oak", values.get("utensils.spoons.wooden"));
+        Assert.assertFalse(values.containsKey("not.a.real.key"));
+        Assert.assertTrue(flags.isSet("test_eid", ParticipantFlags.TOUCHED));
+        Assert.assertTrue(flags.isSet("test_eid_2", ParticipantFlags.TOUCHED));
+        verify(store, times(1)).putFlag(participant.getUserId(), "test_eid", "touched");
+        verify(store, times(1)).putFlag(participant.getUserId(), "test_eid_2", "touched");
+        verify(store, never()).put(any(), any());
+    }
+
+    @Test
+    public void testGetValuesFromAllocationsSkipsStoreWhenNothingTouched() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendAllocationStore store = mock(AscendAllocationStore.class);
+        Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocation), store);
+
+        Map<String, Object> keysWithDefaults = new HashMap<>();
+        keysWithDefaults.put("not.a.real.key", "none");
+
+        Assert.assertTrue(allocations.getValuesFromAllocations(keysWithDefaults, participant)
+                .isEmpty());
+        verify(store, never()).putFlag(any(), any(), any());
     }
 
     @Test
@@ -87,5 +158,88 @@ public class AllocationsTest {
         Assert.assertEquals(expected, activeExperiments);
     }
 
+    @Test
+    public void testGetFetchedAt() {
+        JsonArray allocations = parseRawAllocations(rawMultiAllocation);
+        Assert.assertEquals(-1, Allocations.getFetchedAt(allocations));
+        Assert.assertEquals(-1, Allocations.getFetchedAt(new JsonArray()));
+
+        JsonArray fetchedAllocations = Allocations.markFetched(allocations, 1000);
+        Assert.assertEquals(-1, Allocations.getFetchedAt(allocations));
+        allocations = fetchedAllocations;
+        Assert.assertEquals(1000, Allocations.getFetchedAt(allocations));
+
+        allocations.get(1).getAsJsonObject().addProperty("fetched_at", 500);
+        Assert.assertEquals(500, Allocations.getFetchedAt(allocations));
+
+        allocations.get(0).getAsJsonObject().remove("fetched_at");
+        Assert.assertEquals(-1, Allocations.getFetchedAt(allocations));
+    }
 
+    private JsonArray createAllocations(String... eidsAndCids) {
+        JsonArray allocations = new JsonArray();
+        for (int i = 0; i < eidsAndCids.length; i += 2) {
+            JsonObject allocation = new JsonObject();
+            allocation.addProperty("eid", eidsAndCids[i]);
+            allocation.addProperty("cid", eidsAndCids[i + 1]);
+            allocations.add(allocation);
+        }
+        return allocations;
+    }
+
+    @Test
+    public void testReconcileAllocations() {
+        JsonArray previousAllocations = createAllocations("kept", "previous_cid",
+                "retired", "previous_cid");
+        JsonArray currentAllocations = createAllocations("new", "current_cid",
+                "kept", "current_cid");
+
+        JsonArray reconciled = Allocations.reconcileAllocations(previousAllocations,
+                currentAllocations);
+
+        Assert.assertEquals(createAllocations("new", "current_cid", "kept", "previous_cid"),
+                reconciled);
+        Assert.assertSame(previousAllocations.get(0), reconciled.get(1));
+    }
+
+    @Test
+    public void testReconcileAllocationsKeepsDuplicatePreviousAllocations() {
+        JsonArray previousAllocations = createAllocations("kept", "first_cid",
+                "other", "other_cid", "kept", "second_cid");
+        JsonArray currentAllocations = createAllocations("kept", "current_cid");
+
+        JsonArray reconciled = Allocations.reconcileAllocations(previousAllocations,
+                currentAllocations);
+
+        Assert.assertEquals(createAllocations("kept", "first_cid", "kept", "second_cid"),
+                reconciled);
+    }
+
+    @Test
+    public void testReconcileAllocationsWithoutPreviousAllocations() {
+        JsonArray currentAllocations = createAllocations("new", "current_cid");
+
+        Assert.assertEquals(currentAllocations, Allocations.reconcileAllocations(new JsonArray(),
+                currentAllocations));
+        Assert.assertEquals(new JsonArray(), Allocations.reconcileAllocations(currentAllocations,
+                new JsonArray()));
+    }
+
+    @Test
+    public void testReconcileAllocationsWithNumericExperimentIdsParsedDifferently() {
+        JsonArray previousAllocations = new JsonArray();
+        JsonObject previousAllocation = new JsonObject();
+        previousAllocation.addProperty("eid", 1234L);
+        previousAllocation.addProperty("cid", "previous_cid");
+        previousAllocation.addProperty("confirmed", true);
+        previousAllocations.add(previousAllocation);
+        JsonArray currentAllocations = parseRawAllocations(
+                "[{\"eid\":1234,\"cid\":\"current_cid\"}]");
+
+        JsonArray reconciled = Allocations.reconcileAllocations(previousAllocations,
+                currentAllocations);
+
+        Assert.assertEquals(1, reconciled.size());
+        Assert.assertSame(previousAllocation, reconciled.get(0));
+    }
 }
@@ -13,6 +13,8 @@ import static org.mockito.Mockito.*;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 
 public class AllocatorTest {
@@ -70,10 +72,24 @@ public class AllocatorTest {
 
         when(mockedConfig.getExecutionQueue()).thenReturn(mockExecutionQueue);
         when(mockedConfig.getHttpClient()).thenReturn(mockHttpClient);
+        when(mockedConfig.getInFlightAllocations()).thenReturn(actualConfig.getInFlightAllocations());
+        when(mockedConfig.getAllocationFreshness()).thenReturn(actualConfig.getAllocationFreshness());
+        when(mockedConfig.getEventDispatcher()).thenReturn(actualConfig.getEventDispatcher());
+        when(mockedConfig.getMetrics()).thenReturn(actualConfig.getMetrics());
+        when(mockedConfig.getParticipantFlags(any())).thenAnswer(invocation ->
+                actualConfig.getParticipantFlags((String) invocation.getArguments()[0]));
 
         return mockedConfig;
     }
 
+    private static AllocationSet allocationSetOf(JsonArray allocations) {
+        return argThat(allocationSet -> allocationSet.getSource().equals(allocations));
+    }
+
+    static CompletableFuture<byte[]> bytesOf(CompletableFuture<String> response) {
+        return response.thenApply(body -> body.getBytes(StandardCharsets.UTF_8));
+    }
+
     static String createAllocationsUrl(AscendConfig config, AscendParticipant participant) {
         return String.format("%s://%s/%s/%s/allocations?uid=%s&sid=%s",
                 config.getHttpScheme(),
@@ -147,8 +163,8 @@ public class AllocatorTest {
         Allocator allocator = new Allocator(mockConfig, participant);
         JsonArray actualAllocations = allocator.resolveAllocationFailure();
 
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(
-                eq(allocations), any(), eq(false), eq(false));
+        verify(mockExecutionQueue, never()).executeAllWithValuesFromAllocations(
+                any(), any(), any(), anyBoolean(), anyBoolean());
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
         Assert.assertEquals(allocations, actualAllocations);
     }
@@ -169,7 +185,7 @@ public class AllocatorTest {
         EventEmitter mockEventEmitter = new EventEmitter(mockConfig, participant, mockAllocationStore);
 
         verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(
-                eq(allocations), any(), eq(true), eq(false));
+                eq(Collections.emptyList()), allocationSetOf(allocations), any(), eq(true), eq(false));
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
         Assert.assertEquals(allocations, actualAllocations);
     }
@@ -188,7 +204,7 @@ public class AllocatorTest {
         JsonArray actualAllocations = allocator.resolveAllocationFailure();
 
         verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(
-                eq(allocations), any(), eq(false), eq(true));
+                eq(Collections.emptyList()), allocationSetOf(allocations), any(), eq(false), eq(true));
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
         Assert.assertEquals(allocations, actualAllocations);
     }
@@ -206,11 +222,89 @@ public class AllocatorTest {
         JsonArray actualAllocations = allocator.resolveAllocationFailure();
 
         verify(mockExecutionQueue, times(1))
-                .executeAllWithValuesFromDefaults();
+                .executeAllWithValuesFromDefaults(eq(Collections.emptyList()));
         Assert.assertEquals(Allocator.AllocationStatus.FAILED, allocator.getAllocationStatus());
         Assert.assertEquals(new JsonArray(), actualAllocations);
     }
 
+    @Test
+    public void testRequestsMadeWhileFetchingAreAppliedOnce() {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        Execution<?> execution = mock(Execution.class);
+
+        Allocator allocator = new Allocator(mockConfig, participant);
+        allocator.fetchAllocations();
+        Assert.assertTrue(allocator.enqueue(execution));
+        Assert.assertTrue(allocator.sandBagConfirmation());
+        allocationsResponseFuture.complete(rawAllocation);
+
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(
+                eq(Collections.singletonList(execution)), allocationSetOf(allocations),
+                any(), eq(true), eq(false));
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        Assert.assertFalse(allocator.enqueue(execution));
+        Assert.assertFalse(allocator.sandBagConfirmation());
+        Assert.assertFalse(allocator.sandBagContamination());
+    }
+
+    @Test
+    public void testRequestsMadeWhilePendingOnesAreAppliedAreNotLost() {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        Execution<?> first = mock(Execution.class);
+        Execution<?> second = mock(Execution.class);
+
+        Allocator allocator = new Allocator(mockConfig, participant);
+        allocator.fetchAllocations();
+        allocator.enqueue(first);
+        doAnswer(invocation -> {
+            // the status is only published once these have been applied
+            Assert.assertEquals(Allocator.AllocationStatus.FETCHING, allocator.getAllocationStatus());
+            Assert.assertTrue(allocator.enqueue(second));
+            Assert.assertTrue(allocator.sandBagConfirmation());
+            return null;
+        }).when(mockExecutionQueue).executeAllWithValuesFromAllocations(
+                eq(Collections.singletonList(first)), any(), any(), eq(false), eq(false));
+        allocationsResponseFuture.complete(rawAllocation);
+
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(
+                eq(Collections.singletonList(second)), any(), any(), eq(true), eq(false));
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+    }
+
+    @Test
+    public void testStatusIsPublishedWhenPendingRequestsFail() {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        doThrow(new IllegalStateException("failing request")).when(mockExecutionQueue)
+                .executeAllWithValuesFromAllocations(any(), any(), any(), anyBoolean(), anyBoolean());
+
+        Allocator allocator = new Allocator(mockConfig, participant);
+        allocator.fetchAllocations();
+        Assert.assertTrue(allocator.sandBagConfirmation());
+        allocationsResponseFuture.complete(rawAllocation);
+
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        Assert.assertFalse(allocator.enqueue(mock(Execution.class)));
+    }
+
     @Test
     public void testFetchAllocationsWithNoAllocationsInStore() {
         CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
@@ -218,7 +312,7 @@ public class AllocatorTest {
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
         AscendParticipant participant = AscendParticipant.builder().build();
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
-        when(mockHttpClient.get(createAllocationsUrl(actualConfig, participant))).thenReturn(allocationsResponseFuture);
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
         when(mockAllocationStore.get(participant.getUserId())).thenReturn(new JsonArray());
         mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
                 mockHttpClient, mockAllocationStore);
@@ -229,8 +323,10 @@ public class AllocatorTest {
         verify(mockAllocationStore, times(1)).get(participant.getUserId());
         verify(mockAllocationStore, times(1)).put(participant.getUserId(), allocations);
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(eq(allocations),
-                any(), eq(false), eq(false));
+        verify(mockExecutionQueue, never()).executeAllWithValuesFromAllocations(
+                any(), any(), any(), anyBoolean(), anyBoolean());
+        // nothing was requested while fetching, the allocations are left for the client to parse
+        verify(mockConfig, never()).getParticipantFlags(any());
     }
 
     @Test
@@ -240,7 +336,7 @@ public class AllocatorTest {
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
         AscendParticipant participant = AscendParticipant.builder().build();
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
-        when(mockHttpClient.get(createAllocationsUrl(actualConfig, participant))).thenReturn(allocationsResponseFuture);
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
         when(mockAllocationStore.get(participant.getUserId())).thenReturn(allocations);
         mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
                 mockHttpClient, mockAllocationStore);
@@ -251,8 +347,43 @@ public class AllocatorTest {
         verify(mockAllocationStore, times(1)).get(participant.getUserId());
         verify(mockAllocationStore, times(1)).put(participant.getUserId(), allocations);
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(eq(allocations),
-                any(), eq(false), eq(false));
+        verify(mockExecutionQueue, never()).executeAllWithValuesFromAllocations(
+                any(), any(), any(), anyBoolean(), anyBoolean());
+        // nothing was requested while fetching, the allocations are left for the client to parse
+        verify(mockConfig, never()).getParticipantFlags(any());
+    }
+
+    @Test
+    public void testConcurrentFetchesShareOneRequest() {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(bytesOf(allocationsResponseFuture));
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+
+        Allocator firstAllocator = new Allocator(mockConfig, participant);
+        Allocator secondAllocator = new Allocator(mockConfig, participant);
+        CompletableFuture<JsonArray> firstFuture = firstAllocator.fetchAllocations();
+        CompletableFuture<JsonArray> secondFuture = secondAllocator.fetchAllocations();
+
+        verify(mockHttpClient, times(1)).getBytes(createAllocationsUrl(actualConfig, participant));
+        Assert.assertEquals(1, actualConfig.getInFlightAllocations().size());
+
+        allocationsResponseFuture.complete(rawAllocation);
+
+        Assert.assertEquals(allocations, firstFuture.join());
+        Assert.assertEquals(allocations, secondFuture.join());
+        Assert.assertSame(firstFuture.join(), secondFuture.join());
+        verify(mockAllocationStore, times(1)).put(participant.getUserId(), allocations);
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, firstAllocator.getAllocationStatus());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, secondAllocator.getAllocationStatus());
+        Assert.assertEquals(0, actualConfig.getInFlightAllocations().size());
+
+        new Allocator(mockConfig, participant).fetchAllocations();
+        verify(mockHttpClient, times(2)).getBytes(createAllocationsUrl(actualConfig, participant));
     }
 
 }
@@ -0,0 +1,56 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AscendAllocationStoreTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    @Test
+    public void testPutFlagStoresACopyWithTheFlagSet() {
+        MapStore store = new MapStore();
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put("test_user", allocations);
+
+        store.putFlag("test_user", "test_eid", "confirmed");
+
+        Assert.assertTrue(store.get("test_user").get(0).getAsJsonObject().get("confirmed")
+                .getAsBoolean());
+        Assert.assertFalse(allocations.get(0).getAsJsonObject().has("confirmed"));
+        Assert.assertEquals(2, store.puts);
+    }
+
+    @Test
+    public void testPutFlagWithoutStoredAllocationsDoesNothing() {
+        MapStore store = new MapStore();
+
+        store.putFlag("test_user", "test_eid", "confirmed");
+        store.allocations.put("test_user", new JsonArray());
+        store.putFlag("test_user", "test_eid", "confirmed");
+
+        Assert.assertEquals(0, store.puts);
+    }
+
+    private static class MapStore implements AscendAllocationStore {
+
+        final Map<String, JsonArray> allocations = new HashMap<>();
+        int puts;
+
+        @Override
+        public JsonArray get(String uid) {
+            return allocations.get(uid);
+        }
+
+        @Override
+        public void put(String uid, JsonArray allocations) {
+            puts++;
+            this.allocations.put(uid, allocations);
+        }
+    }
+}
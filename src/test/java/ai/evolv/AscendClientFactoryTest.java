@@ -9,10 +9,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.mockito.Mockito.*;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class AscendClientFactoryTest {
 
@@ -75,7 +77,7 @@ public class AscendClientFactoryTest {
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
         CompletableFuture<String> mockFuture = new CompletableFuture<>();
         mockFuture.complete(rawAllocation);
-        when(mockHttpClient.get(createAllocationsUrl(actualConfig, participant))).thenReturn(mockFuture);
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(AllocatorTest.bytesOf(mockFuture));
 
         AscendClient client = AscendClientFactory.init(mockConfig);
         verify(mockAllocationStore, times(2)).get(participant.getUserId());
@@ -91,11 +93,80 @@ public class AscendClientFactoryTest {
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
         CompletableFuture<String> mockFuture = new CompletableFuture<>();
         mockFuture.complete(rawAllocation);
-        when(mockHttpClient.get(createAllocationsUrl(actualConfig, participant))).thenReturn(mockFuture);
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(AllocatorTest.bytesOf(mockFuture));
 
         AscendClient client = AscendClientFactory.init(mockConfig, participant);
         verify(mockAllocationStore, times(2)).get(participant.getUserId());
         Assert.assertTrue(client instanceof AscendClient);
     }
 
+    @Test
+    public void testFreshAllocationsAreServedFromTheStore() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient)
+                .setAllocationFreshness(1, TimeUnit.HOURS)
+                .build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        JsonArray storedAllocations = Allocations.markFetched(new JsonParser().parse(rawAllocation)
+                .getAsJsonArray(), System.currentTimeMillis());
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(storedAllocations);
+
+        AscendClient client = AscendClientFactory.init(mockConfig, participant);
+
+        verify(mockHttpClient, never()).getBytes(anyString());
+        Assert.assertEquals(2.5, client.get("search.weighting.distance", 1.0), 0);
+    }
+
+    @Test
+    public void testStaleAllocationsAreServedWhileRefreshed() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient)
+                .setAllocationFreshness(1, TimeUnit.MINUTES)
+                .build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        long staleFetchedAt = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        JsonArray storedAllocations = Allocations.markFetched(new JsonParser().parse(rawAllocation)
+                .getAsJsonArray(), staleFetchedAt);
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(storedAllocations);
+        CompletableFuture<String> refreshFuture = new CompletableFuture<>();
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(AllocatorTest.bytesOf(refreshFuture));
+
+        AscendClient client = AscendClientFactory.init(mockConfig, participant);
+
+        verify(mockHttpClient, times(1)).getBytes(createAllocationsUrl(actualConfig, participant));
+        verify(mockAllocationStore, never()).put(anyString(), any(JsonArray.class));
+        Assert.assertEquals(2.5, client.get("search.weighting.distance", 1.0), 0);
+
+        refreshFuture.complete(rawAllocation);
+
+        ArgumentCaptor<JsonArray> refreshedAllocations = ArgumentCaptor.forClass(JsonArray.class);
+        verify(mockAllocationStore, times(1)).put(eq(participant.getUserId()),
+                refreshedAllocations.capture());
+        Assert.assertTrue(Allocations.getFetchedAt(refreshedAllocations.getValue()) > staleFetchedAt);
+        verify(mockExecutionQueue, never()).executeAllWithValuesFromAllocations(any(), any(),
+                any(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testAllocationsWithoutFetchTimeAreFetched() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient)
+                .setAllocationFreshness(1, TimeUnit.HOURS)
+                .build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        when(mockAllocationStore.get(participant.getUserId()))
+                .thenReturn(new JsonParser().parse(rawAllocation).getAsJsonArray());
+        CompletableFuture<String> mockFuture = new CompletableFuture<>();
+        mockFuture.complete(rawAllocation);
+        when(mockHttpClient.getBytes(createAllocationsUrl(actualConfig, participant))).thenReturn(AllocatorTest.bytesOf(mockFuture));
+
+        AscendClientFactory.init(mockConfig, participant);
+
+        verify(mockHttpClient, times(1)).getBytes(createAllocationsUrl(actualConfig, participant));
+        verify(mockAllocationStore, times(1)).put(eq(participant.getUserId()),
+                argThat(allocations -> Allocations.getFetchedAt(allocations) >= 0));
+    }
 }
@@ -10,7 +10,20 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.*;
 
@@ -144,6 +157,142 @@ public class AscendClientImplTest {
         Assert.assertEquals(expected, result);
     }
 
+    @Test
+    public void testGetWithTimeoutReturnsDefaultsUponTimeout() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false, participant);
+        Double expectedValue = .001;
+        Double result = client.get("search.weighting.distance", expectedValue, 10, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(expectedValue, result);
+    }
+
+    @Test
+    public void testGetWithTimeoutValueSuccess() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        allocationsFuture.complete(allocations);
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false, participant);
+        Double result = client.get("search.weighting.distance", .001, 10, TimeUnit.MILLISECONDS);
+        Double expected = 2.5;
+        Assert.assertEquals(expected, result);
+    }
+
+    @Test
+    public void testGetAsyncReturnsDefaultsUponNullFuture() throws Exception {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, null, mockAllocator,
+                false, participant);
+        Double expectedValue = .001;
+        CompletableFuture<Double> result = client.getAsync("search.weighting.distance", expectedValue);
+        Assert.assertTrue(result.isDone());
+        Assert.assertEquals(expectedValue, result.get());
+    }
+
+    @Test
+    public void testGetAsyncCompletesWithAllocation() throws Exception {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false, participant);
+        CompletableFuture<Double> result = client.getAsync("search.weighting.distance", .001);
+        CompletableFuture<Double> missing = client.getAsync("not.a.real.key", .001);
+        Assert.assertFalse(result.isDone());
+
+        allocationsFuture.complete(new JsonParser().parse(rawAllocation).getAsJsonArray());
+
+        Double expected = 2.5;
+        Assert.assertEquals(expected, result.get());
+        Double expectedDefault = .001;
+        Assert.assertEquals(expectedDefault, missing.get());
+    }
+
+    @Test
+    public void testGetAsyncReturnsDefaultsUponFailedFuture() throws Exception {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.completeExceptionally(new RuntimeException("test"));
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false, participant);
+        Double expectedValue = .001;
+        Assert.assertEquals(expectedValue, client.getAsync("search.weighting.distance", expectedValue).get());
+    }
+
+    @Test
+    public void testGetAllReturnsDefaultsUponNullFuture() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, null, mockAllocator,
+                false, participant);
+        Map<String, Object> keysWithDefaults = new HashMap<>();
+        keysWithDefaults.put("search.weighting.distance", .001);
+        Assert.assertEquals(keysWithDefaults, client.getAll(keysWithDefaults));
+    }
+
+    @Test
+    public void testGetAllValuesSuccess() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        allocationsFuture.complete(allocations);
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false, participant);
+        Map<String, Object> keysWithDefaults = new HashMap<>();
+        keysWithDefaults.put("search.weighting.distance", .001);
+        keysWithDefaults.put("pages.testing_page.header", "black");
+        keysWithDefaults.put("not.a.real.key", "default");
+
+        Map<String, Object> values = client.getAll(keysWithDefaults);
+
+        Assert.assertEquals(2.5, values.get("search.weighting.distance"));
+        Assert.assertEquals("white", values.get("pages.testing_page.header"));
+        Assert.assertEquals("default", values.get("not.a.real.key"));
+        verify(mockAllocationStore, times(1)).putFlag(participant.getUserId(), "test_eid",
+                "touched");
+    }
+
     @Test
     public void testEmitEventWithScore() {
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
@@ -190,7 +339,7 @@ public class AscendClientImplTest {
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
-        when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
+        when(mockAllocator.sandBagConfirmation()).thenReturn(true);
 
         AscendParticipant participant = AscendParticipant.builder().build();
 
@@ -203,6 +352,7 @@ public class AscendClientImplTest {
         client.confirm();
 
         verify(mockAllocator, times(1)).sandBagConfirmation();
+        verify(mockEventEmitter, never()).confirm(any());
     }
 
     @Test
@@ -222,7 +372,7 @@ public class AscendClientImplTest {
                 false, participant);
         client.confirm();
 
-        verify(mockEventEmitter, times(1)).confirm(allocations);
+        verify(mockEventEmitter, times(1)).confirm(argThat(allocationSet -> allocationSet.getSource() == allocations));
     }
 
     @Test
@@ -230,7 +380,7 @@ public class AscendClientImplTest {
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
-        when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
+        when(mockAllocator.sandBagContamination()).thenReturn(true);
 
         AscendParticipant participant = AscendParticipant.builder().build();
 
@@ -243,6 +393,7 @@ public class AscendClientImplTest {
         client.contaminate();
 
         verify(mockAllocator, times(1)).sandBagContamination();
+        verify(mockEventEmitter, never()).contaminate(any());
     }
 
     @Test
@@ -264,7 +415,7 @@ public class AscendClientImplTest {
                 false, participant);
         client.contaminate();
 
-        verify(mockEventEmitter, times(1)).contaminate(allocations);
+        verify(mockEventEmitter, times(1)).contaminate(argThat(allocationSet -> allocationSet.getSource() == allocations));
     }
 
     @Test
@@ -277,6 +428,7 @@ public class AscendClientImplTest {
 
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
+        when(mockAllocator.enqueue(any())).thenReturn(true);
         when(mockAllocationStore.get(participant.getUserId())).thenReturn(allocations);
 
         CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
@@ -293,7 +445,8 @@ public class AscendClientImplTest {
         });
 
 
-        verify(mockExecutionQueue, times(1)).enqueue(any());
+        verify(mockAllocator, times(1)).enqueue(any());
+        Assert.assertEquals(expectedTestValue, testValue);
 
         testValue = 0.0;
     }
@@ -393,4 +546,183 @@ public class AscendClientImplTest {
         testValue = 0.0;
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSubscribeDispatchesToTheCallbackExecutor() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        when(mockConfig.getCallbackExecutor()).thenReturn(tasks::add);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(allocations);
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter,
+                CompletableFuture.completedFuture(allocations), mockAllocator, false, participant);
+        Queue<Double> values = new ConcurrentLinkedQueue<>();
+        client.subscribe("search.weighting.distance", 0.0, values::add);
+        client.subscribe("not.a.valid.key", 0.01, values::add);
+
+        Assert.assertTrue(values.isEmpty());
+        Assert.assertEquals(2, tasks.size());
+        tasks.forEach(Runnable::run);
+        Assert.assertEquals(Arrays.asList(2.5, 0.01), new ArrayList<>(values));
+    }
+
+    @Test
+    public void testSubscribeDispatchesToItsOwnExecutor() {
+        AscendParticipant participant = AscendParticipant.builder().build();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        Queue<Runnable> configTasks = new ConcurrentLinkedQueue<>();
+        Queue<Runnable> subscriptionTasks = new ConcurrentLinkedQueue<>();
+        when(mockConfig.getCallbackExecutor()).thenReturn(configTasks::add);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
+        when(mockAllocationStore.get(participant.getUserId())).thenReturn(allocations);
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter,
+                CompletableFuture.completedFuture(allocations), mockAllocator, false, participant);
+        client.subscribe("search.weighting.distance", 0.0, value -> {
+            throw new IllegalStateException("failing action");
+        }, subscriptionTasks::add);
+
+        Assert.assertTrue(configTasks.isEmpty());
+        Assert.assertEquals(1, subscriptionTasks.size());
+        // the action's exception is logged by the task
+        subscriptionTasks.remove().run();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubscribeWithNullExecutor() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter,
+                new CompletableFuture<>(), mockAllocator, false, AscendParticipant.builder().build());
+        client.subscribe("search.weighting.distance", 0.0, value -> { }, null);
+    }
+
+    @Test
+    public void testSubscriptionsWaitingForTheFetchFanOut() throws Exception {
+        ExecutorService callbackExecutor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<String> allocationsResponse = new CompletableFuture<>();
+            HttpClient httpClient = url -> url.contains("/allocations") ? allocationsResponse
+                    : CompletableFuture.completedFuture("");
+            AscendClient client = AscendClientFactory.init(
+                    AscendConfig.builder(environmentId, httpClient)
+                            .setCallbackExecutor(callbackExecutor)
+                            .build(),
+                    AscendParticipant.builder().build());
+
+            // each action only returns once both are running
+            CyclicBarrier running = new CyclicBarrier(2);
+            CountDownLatch applied = new CountDownLatch(2);
+            AscendAction<Double> action = value -> {
+                try {
+                    running.await(5, TimeUnit.SECONDS);
+                    applied.countDown();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+            client.subscribe("search.weighting.distance", 0.0, action);
+            client.subscribe("search.weighting.dealer_score", 0.0, action);
+
+            allocationsResponse.complete(rawAllocation);
+            Assert.assertTrue(applied.await(5, TimeUnit.SECONDS));
+        } finally {
+            callbackExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStoredAndFetchedValuesAreAppliedInOrderOnAnExecutor() throws Exception {
+        ExecutorService callbackExecutor = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<String> allocationsResponse = new CompletableFuture<>();
+            HttpClient httpClient = url -> url.contains("/allocations") ? allocationsResponse
+                    : CompletableFuture.completedFuture("");
+            AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                    .setCallbackExecutor(callbackExecutor)
+                    .build();
+            AscendParticipant participant = AscendParticipant.builder().build();
+            JsonArray storedAllocations = new JsonParser().parse(rawAllocation.replace(
+                    "test_eid", "stored_eid").replace("2.5", "1.5")).getAsJsonArray();
+            config.getAscendAllocationStore().put(participant.getUserId(), storedAllocations);
+            AscendClient client = AscendClientFactory.init(config, participant);
+
+            Queue<Double> values = new ConcurrentLinkedQueue<>();
+            CountDownLatch applied = new CountDownLatch(2);
+            client.subscribe("search.weighting.distance", 0.0, value -> {
+                if (value == 1.5) {
+                    // the stored value is slow to apply
+                    sleep(100);
+                }
+                values.add(value);
+                applied.countDown();
+            });
+            allocationsResponse.complete(rawAllocation);
+
+            Assert.assertTrue(applied.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(1.5, 2.5), new ArrayList<>(values));
+        } finally {
+            callbackExecutor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testSubscriptionAndConfirmationRacingTheFetchAreApplied() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                CompletableFuture<String> allocationsResponse = new CompletableFuture<>();
+                Queue<String> confirmations = new ConcurrentLinkedQueue<>();
+                HttpClient httpClient = url -> {
+                    if (url.contains("/allocations")) {
+                        return allocationsResponse;
+                    }
+                    if (url.contains("type=confirmation")) {
+                        confirmations.add(url);
+                    }
+                    return CompletableFuture.completedFuture("");
+                };
+                AscendClient client = AscendClientFactory.init(
+                        AscendConfig.builder(environmentId, httpClient).build(),
+                        AscendParticipant.builder().build());
+
+                Queue<Double> values = new ConcurrentLinkedQueue<>();
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> response = executor.submit(() -> {
+                    barrier.await();
+                    return allocationsResponse.complete(rawAllocation);
+                });
+                barrier.await();
+                // spread the subscription over the time the response takes to be handled
+                long subscribeAt = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(i % 100);
+                while (System.nanoTime() < subscribeAt) {
+                    Thread.yield();
+                }
+                client.subscribe("search.weighting.distance", 0.0, values::add);
+                client.confirm();
+                response.get(5, TimeUnit.SECONDS);
+
+                Assert.assertEquals(Collections.singletonList(2.5), new ArrayList<>(values));
+                Assert.assertEquals(1, confirmations.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
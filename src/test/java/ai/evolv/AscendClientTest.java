@@ -0,0 +1,140 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AscendClientTest {
+
+    @Test
+    public void testGetAsyncDefaultsToGet() throws Exception {
+        StubClient client = new StubClient();
+        client.values.put("search.weighting.distance", 2.5);
+
+        Assert.assertEquals(2.5, client.getAsync("search.weighting.distance", 0.0)
+                .get(1, TimeUnit.SECONDS), 0);
+        Assert.assertEquals(0.0, client.getAsync("search.weighting.missing", 0.0)
+                .get(1, TimeUnit.SECONDS), 0);
+    }
+
+    @Test
+    public void testGetAsyncCompletesWithTheDefaultUponError() throws Exception {
+        StubClient client = new StubClient();
+        client.failure = new IllegalStateException("broken");
+
+        Assert.assertEquals(0.0, client.getAsync("search.weighting.distance", 0.0)
+                .get(1, TimeUnit.SECONDS), 0);
+    }
+
+    @Test
+    public void testGetWithTimeoutDefaultsToGet() {
+        StubClient client = new StubClient();
+        client.values.put("search.weighting.distance", 2.5);
+
+        Assert.assertEquals(2.5, client.get("search.weighting.distance", 0.0, 1,
+                TimeUnit.SECONDS), 0);
+        Assert.assertEquals(0.0, client.get("search.weighting.missing", 0.0, 1,
+                TimeUnit.SECONDS), 0);
+    }
+
+    @Test
+    public void testGetAllDefaultsToGet() {
+        StubClient client = new StubClient();
+        client.values.put("search.weighting.distance", 2.5);
+
+        Map<String, Object> keysWithDefaults = new HashMap<>();
+        keysWithDefaults.put("search.weighting.distance", 0.0);
+        keysWithDefaults.put("search.weighting.missing", 1.0);
+        keysWithDefaults.put("pages.testing_page.header", null);
+
+        Map<String, Object> values = client.getAll(keysWithDefaults);
+        Assert.assertEquals(2.5, values.get("search.weighting.distance"));
+        Assert.assertEquals(1.0, values.get("search.weighting.missing"));
+        Assert.assertTrue(values.containsKey("pages.testing_page.header"));
+        Assert.assertNull(values.get("pages.testing_page.header"));
+    }
+
+    @Test
+    public void testSubscribeWithAnExecutorAppliesTheValuesInOrder() throws Exception {
+        StubClient client = new StubClient();
+        List<Object> applied = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            client.subscribe("search.weighting.distance", 0.0, value -> {
+                if (value == 0.0) {
+                    sleep(100);
+                }
+                applied.add(value);
+            }, executor);
+            client.values.put("search.weighting.distance", 2.5);
+            client.reapply();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(Arrays.asList(0.0, 2.5), applied);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubscribeWithNullExecutor() {
+        new StubClient().subscribe("search.weighting.distance", 0.0, value -> {}, null);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class StubClient implements AscendClient {
+
+        final Map<String, Object> values = new ConcurrentHashMap<>();
+        final List<Runnable> subscriptions = new ArrayList<>();
+        volatile RuntimeException failure;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(String key, T defaultValue) {
+            if (failure != null) {
+                throw failure;
+            }
+            return (T) values.getOrDefault(key, defaultValue);
+        }
+
+        @Override
+        public <T> void subscribe(String key, T defaultValue, AscendAction<T> function) {
+            Runnable subscription = () -> function.apply(get(key, defaultValue));
+            subscriptions.add(subscription);
+            subscription.run();
+        }
+
+        void reapply() {
+            subscriptions.forEach(Runnable::run);
+        }
+
+        @Override
+        public void emitEvent(String key, Double score) {}
+
+        @Override
+        public void emitEvent(String key) {}
+
+        @Override
+        public void confirm() {}
+
+        @Override
+        public void contaminate() {}
+    }
+}
@@ -1,5 +1,7 @@
 package ai.evolv;
 
+import com.google.gson.JsonArray;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -7,6 +9,9 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 public class AscendConfigTest {
 
     private static final String ENVIRONMENT_ID = "test_12345";
@@ -65,4 +70,125 @@ public class AscendConfigTest {
         Assert.assertEquals(httpScheme, config.getHttpScheme());
     }
 
+    @Test
+    public void testAllocationFreshness() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertEquals(0, config.getAllocationFreshness());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationFreshness(5, TimeUnit.MINUTES)
+                .build();
+        Assert.assertEquals(300000, config.getAllocationFreshness());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeAllocationFreshness() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationFreshness(-1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testEventBatching() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getEventDispatcher());
+        Assert.assertTrue(config.shutdown(1, TimeUnit.SECONDS));
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventBatching(100, 1, TimeUnit.SECONDS)
+                .setEventBufferSize(1000)
+                .build();
+        Assert.assertNotNull(config.getEventDispatcher());
+        Assert.assertTrue(config.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEventBatchSize() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventBatching(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAllocationWriteBehind() {
+        AscendAllocationStore allocationStore = new DefaultAllocationStore(10);
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAscendAllocationStore(allocationStore)
+                .setAllocationWriteBehind(100, 1, TimeUnit.HOURS)
+                .build();
+        Assert.assertTrue(config.getAscendAllocationStore() instanceof WriteBehindAllocationStore);
+
+        JsonArray allocations = new AllocationsTest().parseRawAllocations("[{\"eid\":\"e\"}]");
+        config.getAscendAllocationStore().put("test_user", allocations);
+        Assert.assertEquals(0, allocationStore.get("test_user").size());
+
+        Assert.assertTrue(config.shutdown(1, TimeUnit.SECONDS));
+        Assert.assertEquals(allocations, allocationStore.get("test_user"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWriteBehindStaleness() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationWriteBehind(100, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testMetricsTimeTheAllocationStore() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setMetrics(metrics)
+                .build();
+
+        config.getAscendAllocationStore().get("test_user");
+
+        Assert.assertSame(metrics, config.getMetrics());
+        Assert.assertEquals(1, metrics.getHistogram(AscendMetrics.Timer.STORE_GET).getCount());
+    }
+
+    @Test
+    public void testShutdownWritesAnInstrumentedWriteBehindStore() {
+        DefaultAllocationStore wrapped = new DefaultAllocationStore(10);
+        WriteBehindAllocationStore writeBehind = new WriteBehindAllocationStore(wrapped, 100, 1,
+                TimeUnit.HOURS);
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAscendAllocationStore(writeBehind)
+                .setMetrics(new InMemoryMetrics())
+                .build();
+
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(
+                "[{\"uid\":\"test_user\",\"eid\":\"test_eid\",\"cid\":\"test_cid\","
+                        + "\"genome\":{},\"excluded\":false}]");
+        config.getAscendAllocationStore().put("test_user", allocations);
+        Assert.assertEquals(0, wrapped.get("test_user").size());
+
+        Assert.assertTrue(config.shutdown(1, TimeUnit.SECONDS));
+        Assert.assertEquals(allocations, wrapped.get("test_user"));
+        Assert.assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    @Test
+    public void testNoMetricsByDefault() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertSame(NoopMetrics.INSTANCE, config.getMetrics());
+        Assert.assertTrue(config.getAscendAllocationStore() instanceof DefaultAllocationStore);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullMetrics() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).setMetrics(null);
+    }
+
+    @Test
+    public void testCallbackExecutor() {
+        Executor executor = Runnable::run;
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setCallbackExecutor(executor)
+                .build();
+        Assert.assertSame(executor, config.getCallbackExecutor());
+        Assert.assertNull(AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build()
+                .getCallbackExecutor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCallbackExecutor() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).setCallbackExecutor(null);
+    }
 }
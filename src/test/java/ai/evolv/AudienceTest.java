@@ -1,5 +1,6 @@
 package ai.evolv;
 
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.junit.Assert;
@@ -558,4 +559,169 @@ public class AudienceTest {
         Assert.assertFalse(filter);
     }
 
+    @Test
+    public void testCompileNullAudienceQuery() {
+        Assert.assertNull(Audience.compile(null));
+        Assert.assertNull(Audience.compile(JsonNull.INSTANCE));
+    }
+
+    @Test
+    public void testCompileNoRules() {
+        JsonObject audienceQuery = new JsonParser().parse("{\"combinator\": \"and\"}").getAsJsonObject();
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Assert.assertTrue(Audience.compile(audienceQuery).test(userAttributes));
+    }
+
+    @Test
+    public void testCompileEmptyRules() {
+        JsonObject andQuery = new JsonParser().parse("{\"combinator\": \"and\", \"rules\": []}").getAsJsonObject();
+        JsonObject orQuery = new JsonParser().parse("{\"combinator\": \"or\", \"rules\": []}").getAsJsonObject();
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+
+        Assert.assertTrue(Audience.compile(andQuery).test(userAttributes));
+        Assert.assertFalse(Audience.compile(orQuery).test(userAttributes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsUnknownOperator() {
+        String rawAudienceQuery = "{\"combinator\": \"and\", \"rules\": [{\"value\": [\"country\", \"us\"], \"operator\": \"kv_unknown\", \"field\": \"user_attributes\"}]}";
+        Audience.compile(new JsonParser().parse(rawAudienceQuery));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsUnknownCombinator() {
+        String rawAudienceQuery = "{\"combinator\": \"xor\", \"rules\": [{\"value\": [\"country\", \"us\"], \"operator\": \"kv_equal\", \"field\": \"user_attributes\"}]}";
+        Audience.compile(new JsonParser().parse(rawAudienceQuery));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsMissingCombinator() {
+        String rawAudienceQuery = "{\"rules\": [{\"value\": [\"country\", \"us\"], \"operator\": \"kv_equal\", \"field\": \"user_attributes\"}]}";
+        Audience.compile(new JsonParser().parse(rawAudienceQuery));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsMalformedValue() {
+        String rawAudienceQuery = "{\"combinator\": \"and\", \"rules\": [{\"value\": [\"country\"], \"operator\": \"kv_equal\", \"field\": \"user_attributes\"}]}";
+        Audience.compile(new JsonParser().parse(rawAudienceQuery));
+    }
+
+    @Test
+    public void testFilterCompiledAudienceQuery() {
+        String rawAudienceQuery = "{\"combinator\": \"and\", \"rules\": [{\"value\": [\"country\", \"us\"], \"operator\": \"kv_equal\", \"field\": \"user_attributes\"}, {\"combinator\": \"or\", \"rules\": [{\"value\": \"target\", \"operator\": \"exists\", \"field\": \"user_attributes\"}, {\"value\": [\"post_code\", \"941\"], \"operator\": \"kv_contains\", \"field\": \"user_attributes\"}]}]}";
+        Audience.Condition audienceQuery = Audience.compile(new JsonParser().parse(rawAudienceQuery));
+        Map<String, String> userAttributes;
+
+        userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+        userAttributes.put("post_code", "94110");
+        Assert.assertFalse(Audience.filter(userAttributes, false, audienceQuery));
+        Assert.assertTrue(Audience.filter(userAttributes, true, audienceQuery));
+
+        userAttributes = new HashMap<>();
+        userAttributes.put("country", "us");
+        userAttributes.put("post_code", "10001");
+        Assert.assertTrue(Audience.filter(userAttributes, false, audienceQuery));
+
+        userAttributes.put("target", "true");
+        Assert.assertFalse(Audience.filter(userAttributes, false, audienceQuery));
+
+        Assert.assertFalse(Audience.filter(new HashMap<>(), false, audienceQuery));
+        Assert.assertFalse(Audience.filter(userAttributes, false, null));
+    }
+
+    private Audience.Condition compileSingleRule(String operator, String rawValue) {
+        String rawAudienceQuery = "{\"combinator\": \"and\", \"rules\": [{\"value\": " + rawValue
+                + ", \"operator\": \"" + operator + "\", \"field\": \"user_attributes\"}]}";
+        return Audience.compile(new JsonParser().parse(rawAudienceQuery));
+    }
+
+    private boolean passes(Audience.Condition audienceQuery, String key, String value) {
+        Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put(key, value);
+        return !Audience.filter(userAttributes, false, audienceQuery);
+    }
+
+    @Test
+    public void testFilterKeyValueMatches() {
+        Audience.Condition matches = compileSingleRule("kv_matches", "[\"browser\", \"^Mozilla/5\\\\.0.*Chrome\"]");
+        Assert.assertTrue(passes(matches, "browser", "Mozilla/5.0 (X11) Chrome/76.0"));
+        Assert.assertFalse(passes(matches, "browser", "Mozilla/5.0 (X11) Firefox/68.0"));
+        Assert.assertFalse(passes(matches, "country", "us"));
+
+        Audience.Condition notMatches = compileSingleRule("kv_not_matches", "[\"browser\", \"Chrome\"]");
+        Assert.assertFalse(passes(notMatches, "browser", "Mozilla/5.0 (X11) Chrome/76.0"));
+        Assert.assertTrue(passes(notMatches, "browser", "Mozilla/5.0 (X11) Firefox/68.0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsInvalidPattern() {
+        compileSingleRule("kv_matches", "[\"browser\", \"(Chrome\"]");
+    }
+
+    @Test
+    public void testFilterKeyValueIn() {
+        Audience.Condition in = compileSingleRule("kv_in", "[\"country\", [\"us\", \"ca\", \"mx\"]]");
+        Assert.assertTrue(passes(in, "country", "ca"));
+        Assert.assertFalse(passes(in, "country", "uk"));
+        Assert.assertFalse(passes(in, "post_code", "94110"));
+
+        Audience.Condition notIn = compileSingleRule("kv_not_in", "[\"country\", [\"us\", \"ca\", \"mx\"]]");
+        Assert.assertFalse(passes(notIn, "country", "ca"));
+        Assert.assertTrue(passes(notIn, "country", "uk"));
+        Assert.assertFalse(passes(notIn, "post_code", "94110"));
+    }
+
+    @Test
+    public void testFilterKeyValueNumericComparisons() {
+        Audience.Condition greaterThan = compileSingleRule("kv_greater_than", "[\"age\", 21]");
+        Assert.assertTrue(passes(greaterThan, "age", "30"));
+        Assert.assertFalse(passes(greaterThan, "age", "21"));
+        Assert.assertFalse(passes(greaterThan, "age", "unknown"));
+
+        Audience.Condition greaterThanEqual = compileSingleRule("kv_greater_than_equal", "[\"age\", \"21\"]");
+        Assert.assertTrue(passes(greaterThanEqual, "age", "21.0"));
+        Assert.assertFalse(passes(greaterThanEqual, "age", "20.5"));
+
+        Audience.Condition lessThan = compileSingleRule("kv_less_than", "[\"cart_total\", 99.99]");
+        Assert.assertTrue(passes(lessThan, "cart_total", "10"));
+        Assert.assertFalse(passes(lessThan, "cart_total", "99.99"));
+
+        Audience.Condition lessThanEqual = compileSingleRule("kv_less_than_equal", "[\"cart_total\", 99.99]");
+        Assert.assertTrue(passes(lessThanEqual, "cart_total", "99.99"));
+        Assert.assertFalse(passes(lessThanEqual, "cart_total", "100"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileRejectsNonNumericConstant() {
+        compileSingleRule("kv_greater_than", "[\"age\", \"old\"]");
+    }
+
+    @Test
+    public void testFilterKeyValueVersionComparisons() {
+        Audience.Condition equal = compileSingleRule("kv_version_equal", "[\"app_version\", \"2.1\"]");
+        Assert.assertTrue(passes(equal, "app_version", "2.1.0"));
+        Assert.assertFalse(passes(equal, "app_version", "2.1.1"));
+
+        Audience.Condition greaterThan = compileSingleRule("kv_version_greater_than", "[\"app_version\", \"2.9.0\"]");
+        Assert.assertTrue(passes(greaterThan, "app_version", "2.10.0"));
+        Assert.assertFalse(passes(greaterThan, "app_version", "2.9.0"));
+        Assert.assertFalse(passes(greaterThan, "app_version", "not a version"));
+
+        Audience.Condition greaterThanEqual = compileSingleRule("kv_version_greater_than_equal", "[\"app_version\", \"v3.0.0\"]");
+        Assert.assertTrue(passes(greaterThanEqual, "app_version", "3.0.0"));
+        Assert.assertFalse(passes(greaterThanEqual, "app_version", "3.0.0-beta.2"));
+
+        Audience.Condition lessThan = compileSingleRule("kv_version_less_than", "[\"app_version\", \"3.0.0\"]");
+        Assert.assertTrue(passes(lessThan, "app_version", "3.0.0-rc.1"));
+        Assert.assertFalse(passes(lessThan, "app_version", "3.0.0+build.7"));
+
+        Audience.Condition lessThanEqual = compileSingleRule("kv_version_less_than_equal", "[\"app_version\", \"3.0.0\"]");
+        Assert.assertTrue(passes(lessThanEqual, "app_version", "3"));
+        Assert.assertFalse(passes(lessThanEqual, "app_version", "3.0.1"));
+    }
+
 }
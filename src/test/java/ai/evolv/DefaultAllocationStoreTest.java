@@ -1,6 +1,7 @@
 package ai.evolv;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -27,4 +28,55 @@ public class DefaultAllocationStoreTest {
         Assert.assertNotEquals(new JsonArray(), storedAllocations);
         Assert.assertEquals(allocations, storedAllocations);
     }
+
+    @Test
+    public void testRetrievalsShareTheDecodedAllocations() {
+        AscendAllocationStore store = new DefaultAllocationStore(10);
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put("test_user", allocations);
+
+        JsonArray storedAllocations = store.get("test_user");
+        Assert.assertSame(storedAllocations, store.get("test_user"));
+
+        store.put("test_user", new AllocationsTest().parseRawAllocations(rawAllocation));
+        Assert.assertNotSame(storedAllocations, store.get("test_user"));
+        Assert.assertEquals(allocations, store.get("test_user"));
+    }
+
+    @Test
+    public void testPutFlagSetsTheFlagOfTheExperiment() {
+        AscendAllocationStore store = new DefaultAllocationStore(10);
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put("test_user", allocations);
+
+        store.putFlag("test_user", "test_eid", "confirmed");
+        store.putFlag("test_user", "other_eid", "contaminated");
+
+        JsonObject storedAllocation = store.get("test_user").get(0).getAsJsonObject();
+        Assert.assertTrue(storedAllocation.get("confirmed").getAsBoolean());
+        Assert.assertFalse(storedAllocation.has("contaminated"));
+        Assert.assertFalse(allocations.get(0).getAsJsonObject().has("confirmed"));
+    }
+
+    @Test
+    public void testPutFlagLeavesRetrievedAllocationsUnchanged() {
+        AscendAllocationStore store = new DefaultAllocationStore(10);
+        store.put("test_user", new AllocationsTest().parseRawAllocations(rawAllocation));
+        JsonArray retrieved = store.get("test_user");
+
+        store.putFlag("test_user", "test_eid", "touched");
+        store.putFlag("test_user", "test_eid", "touched");
+
+        Assert.assertFalse(retrieved.get(0).getAsJsonObject().has("touched"));
+        JsonArray flagged = store.get("test_user");
+        Assert.assertTrue(flagged.get(0).getAsJsonObject().get("touched").getAsBoolean());
+        Assert.assertSame(flagged, store.get("test_user"));
+    }
+
+    @Test
+    public void testPutFlagWithoutAllocationsStoresNothing() {
+        AscendAllocationStore store = new DefaultAllocationStore(10);
+        store.putFlag("test_user", "test_eid", "touched");
+        Assert.assertEquals(new JsonArray(), store.get("test_user"));
+    }
 }
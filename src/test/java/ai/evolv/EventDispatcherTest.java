@@ -0,0 +1,134 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventDispatcherTest {
+
+    private static final String url = "https://participants.evolv.ai/v1/test_12345/events";
+
+    private static HttpClient recordingClient(List<String> requests, CountDownLatch sent) {
+        return requestUrl -> {
+            requests.add(requestUrl);
+            sent.countDown();
+            return CompletableFuture.completedFuture("");
+        };
+    }
+
+    @Test
+    public void testFullBatchIsSent() throws InterruptedException {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(3);
+        EventDispatcher dispatcher = new EventDispatcher(recordingClient(requests, sent), 10, 3,
+                1, TimeUnit.HOURS);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(dispatcher.dispatch(url + "?type=" + i));
+        }
+
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(url + "?type=0", requests.get(0));
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPartialBatchIsSentAfterFlushInterval() throws InterruptedException {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(1);
+        EventDispatcher dispatcher = new EventDispatcher(recordingClient(requests, sent), 10, 100,
+                50, TimeUnit.MILLISECONDS);
+
+        dispatcher.dispatch(url);
+
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, requests.size());
+        dispatcher.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testShutdownFlushesBufferedEvents() throws InterruptedException {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(2);
+        EventDispatcher dispatcher = new EventDispatcher(recordingClient(requests, sent), 10, 10,
+                1, TimeUnit.HOURS);
+
+        dispatcher.dispatch(url);
+        dispatcher.dispatch(url);
+        Thread.sleep(50);
+        Assert.assertTrue(requests.isEmpty());
+
+        Assert.assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, requests.size());
+        Assert.assertFalse(dispatcher.dispatch(url));
+        Assert.assertEquals(1, dispatcher.getDroppedEvents());
+    }
+
+    @Test
+    public void testEventsRacingTheShutdownAreSentOrDropped() throws Exception {
+        int events = 10000;
+        List<String> requests = new CopyOnWriteArrayList<>();
+        EventDispatcher dispatcher = new EventDispatcher(recordingClient(requests,
+                new CountDownLatch(0)), events, 10, 1, TimeUnit.MILLISECONDS);
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread emitter = new Thread(() -> {
+            started.countDown();
+            for (int i = 0; i < events; i++) {
+                dispatcher.dispatch(url);
+            }
+        });
+        emitter.start();
+        started.await();
+        Assert.assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        emitter.join();
+
+        Assert.assertEquals(events, requests.size() + dispatcher.getDroppedEvents());
+        Assert.assertEquals(requests.size(), dispatcher.getSentEvents());
+    }
+
+    @Test
+    public void testEventsAreDroppedWhenBufferIsFull() throws InterruptedException {
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventDispatcher dispatcher = new EventDispatcher(requestUrl -> {
+            requested.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture("");
+        }, 2, 1, 0, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(dispatcher.dispatch(url));
+        Assert.assertTrue(requested.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(dispatcher.dispatch(url));
+        Assert.assertTrue(dispatcher.dispatch(url));
+        Assert.assertFalse(dispatcher.dispatch(url));
+        Assert.assertEquals(1, dispatcher.getDroppedEvents());
+
+        release.countDown();
+        Assert.assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, dispatcher.getSentEvents());
+    }
+
+    @Test
+    public void testFailedRequestsAreCounted() throws InterruptedException {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException("test"));
+        EventDispatcher dispatcher = new EventDispatcher(requestUrl -> failed, 10, 1,
+                0, TimeUnit.MILLISECONDS);
+
+        dispatcher.dispatch(url);
+        Assert.assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, dispatcher.getSentEvents());
+        Assert.assertEquals(1, dispatcher.getFailedEvents());
+    }
+}
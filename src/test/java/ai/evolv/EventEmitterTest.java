@@ -12,6 +12,8 @@ import static org.mockito.Mockito.*;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.concurrent.TimeUnit;
+
 public class EventEmitterTest {
 
     private static final String environmentId = "test_12345";
@@ -118,7 +120,7 @@ public class EventEmitterTest {
 
         AscendParticipant participant = AscendParticipant.builder().build();
         EventEmitter emitter = new EventEmitter(mockConfig, participant, mockAllocationStore);
-        emitter.sendAllocationEvents(type, allocations);
+        emitter.sendAllocationEvents(type, AllocationSet.parse(allocations));
 
         verify(mockHttpClient, times(1))
                 .get(createAllocationEventUrl(actualConfig, allocations.get(0).getAsJsonObject(), type, participant));
@@ -133,7 +135,7 @@ public class EventEmitterTest {
 
         AscendParticipant participant = AscendParticipant.builder().build();
         EventEmitter emitter = new EventEmitter(mockConfig, participant, mockAllocationStore);
-        emitter.contaminate(allocations);
+        emitter.contaminate(AllocationSet.parse(allocations));
 
         verify(mockHttpClient, times(1))
                 .get(createAllocationEventUrl(actualConfig, allocations.get(0).getAsJsonObject(),
@@ -149,7 +151,7 @@ public class EventEmitterTest {
 
         AscendParticipant participant = AscendParticipant.builder().build();
         EventEmitter emitter = new EventEmitter(mockConfig, participant, mockAllocationStore);
-        emitter.confirm(allocations);
+        emitter.confirm(AllocationSet.parse(allocations));
 
         verify(mockHttpClient, times(1))
                 .get(createAllocationEventUrl(actualConfig, allocations.get(0).getAsJsonObject(),
@@ -186,5 +188,22 @@ public class EventEmitterTest {
                 .get(createEventsUrl(actualConfig, type, score, participant));
     }
 
+    @Test
+    public void testBatchedEvent() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventBatching(10, 1, TimeUnit.HOURS)
+                .build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+
+        AscendParticipant participant = AscendParticipant.builder().build();
+        EventEmitter emitter = new EventEmitter(mockConfig, participant, mockAllocationStore);
+        emitter.emit(type, score);
+
+        verify(mockHttpClient, never()).get(anyString());
 
+        Assert.assertTrue(actualConfig.shutdown(5, TimeUnit.SECONDS));
+        verify(mockHttpClient, times(1))
+                .get(createEventsUrl(actualConfig, type, score, participant));
+    }
 }
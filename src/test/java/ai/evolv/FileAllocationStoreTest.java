@@ -0,0 +1,254 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileAllocationStoreTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JsonArray allocations() {
+        return new AllocationsTest().parseRawAllocations(rawAllocation);
+    }
+
+    @Test
+    public void testEmptyStoreGetsEmptyJsonArray() throws IOException {
+        try (FileAllocationStore store = new FileAllocationStore(folder.getRoot().toPath())) {
+            Assert.assertEquals(new JsonArray(), store.get("test_user"));
+            Assert.assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void testPutAndGetOnStore() throws IOException {
+        try (FileAllocationStore store = new FileAllocationStore(folder.getRoot().toPath())) {
+            store.put("test_user", allocations());
+            Assert.assertEquals(allocations(), store.get("test_user"));
+            Assert.assertEquals(new JsonArray(), store.get("other_user"));
+        }
+    }
+
+    @Test
+    public void testPutReplacesPreviousAllocations() throws IOException {
+        try (FileAllocationStore store = new FileAllocationStore(folder.getRoot().toPath())) {
+            store.put("test_user", allocations());
+            JsonArray touched = allocations();
+            touched.get(0).getAsJsonObject().addProperty("touched", true);
+            store.put("test_user", touched);
+
+            Assert.assertEquals(touched, store.get("test_user"));
+            Assert.assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void testAllocationsSurviveReopening() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(allocations(), store.get("test_user"));
+            Assert.assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void testIndexGrowsWithManyParticipants() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            for (int i = 0; i < 5000; i++) {
+                store.put("user_" + i, allocations());
+            }
+            Assert.assertEquals(5000, store.size());
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(5000, store.size());
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertEquals(allocations(), store.get("user_" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long completeLength;
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+            completeLength = store.getLogLength();
+            store.put("other_user", allocations());
+        }
+
+        // cut the last record short as an interrupted write would
+        Path log = directory.resolve(FileAllocationStore.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(allocations(), store.get("test_user"));
+            Assert.assertEquals(new JsonArray(), store.get("other_user"));
+            Assert.assertEquals(completeLength, store.getLogLength());
+
+            store.put("other_user", allocations());
+            Assert.assertEquals(allocations(), store.get("other_user"));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordIsDropped() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long completeLength;
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+            completeLength = store.getLogLength();
+        }
+
+        // append a record whose checksum does not match
+        Path log = directory.resolve(FileAllocationStore.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(20);
+            record.putInt(20).putInt(42).putInt(4).put(new byte[8]);
+            channel.write(ByteBuffer.wrap(record.array()), channel.size());
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(allocations(), store.get("test_user"));
+            Assert.assertEquals(completeLength, store.getLogLength());
+        }
+    }
+
+    @Test
+    public void testMissingIndexIsRebuilt() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+            store.put("test_user", allocations());
+            store.put("other_user", allocations());
+        }
+
+        Files.delete(directory.resolve(FileAllocationStore.INDEX_FILE));
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(2, store.size());
+            Assert.assertEquals(allocations(), store.get("test_user"));
+            Assert.assertEquals(allocations(), store.get("other_user"));
+        }
+    }
+
+    @Test
+    public void testReplacedAllocationsAreCompacted() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            long maxLength = 0;
+            for (int i = 0; i < 10000; i++) {
+                store.put("user_" + (i % 10), allocations());
+                maxLength = Math.max(maxLength, store.getLogLength());
+            }
+
+            Assert.assertTrue(maxLength < 2 * 1024 * 1024);
+            Assert.assertEquals(10, store.size());
+            Assert.assertEquals(allocations(), store.get("user_3"));
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(10, store.size());
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(allocations(), store.get("user_" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testPutFlagAppendsAFlagRecord() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        JsonArray confirmed = allocations();
+        confirmed.get(0).getAsJsonObject().addProperty("confirmed", true);
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+            long length = store.getLogLength();
+
+            store.putFlag("test_user", "test_eid", "confirmed");
+            long flagLength = store.getLogLength() - length;
+            Assert.assertTrue(flagLength < 100);
+            Assert.assertEquals(confirmed, store.get("test_user"));
+
+            store.putFlag("test_user", "test_eid", "confirmed");
+            store.putFlag("other_user", "test_eid", "confirmed");
+            Assert.assertEquals(length + flagLength, store.getLogLength());
+            Assert.assertEquals(new JsonArray(), store.get("other_user"));
+        }
+
+        Files.delete(directory.resolve(FileAllocationStore.INDEX_FILE));
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(1, store.size());
+            Assert.assertEquals(confirmed, store.get("test_user"));
+
+            store.put("test_user", allocations());
+            Assert.assertEquals(allocations(), store.get("test_user"));
+        }
+    }
+
+    @Test
+    public void testLongFlagChainsAreMerged() throws IOException {
+        try (FileAllocationStore store = new FileAllocationStore(folder.getRoot().toPath())) {
+            store.put("test_user", allocations());
+            for (int i = 0; i < 40; i++) {
+                store.putFlag("test_user", "other_eid_" + i, "touched");
+            }
+            store.putFlag("test_user", "test_eid", "touched");
+
+            Assert.assertTrue(store.get("test_user").get(0).getAsJsonObject().get("touched")
+                    .getAsBoolean());
+        }
+    }
+
+    @Test
+    public void testFlagsSurviveCompaction() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        JsonArray touched = allocations();
+        touched.get(0).getAsJsonObject().addProperty("touched", true);
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            store.put("test_user", allocations());
+            store.putFlag("test_user", "test_eid", "touched");
+            for (int i = 0; i < 10000; i++) {
+                store.put("user_" + (i % 10), allocations());
+            }
+
+            Assert.assertTrue(store.getLogLength() < 2 * 1024 * 1024);
+            Assert.assertEquals(touched, store.get("test_user"));
+        }
+
+        try (FileAllocationStore store = new FileAllocationStore(directory)) {
+            Assert.assertEquals(11, store.size());
+            Assert.assertEquals(touched, store.get("test_user"));
+        }
+    }
+
+    @Test
+    public void testClosedStoreGetsEmptyJsonArray() throws IOException {
+        FileAllocationStore store = new FileAllocationStore(folder.getRoot().toPath());
+        store.put("test_user", allocations());
+        store.close();
+
+        Assert.assertEquals(new JsonArray(), store.get("test_user"));
+    }
+}
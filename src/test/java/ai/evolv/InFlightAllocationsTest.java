@@ -0,0 +1,95 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InFlightAllocationsTest {
+
+    private static final String environmentId = "test_12345";
+
+    @Test
+    public void testConcurrentFetchesShareOneRequest() {
+        InFlightAllocations inFlightAllocations = new InFlightAllocations();
+        AtomicInteger requests = new AtomicInteger();
+        CompletableFuture<JsonArray> response = new CompletableFuture<>();
+
+        CompletableFuture<JsonArray> first = inFlightAllocations.fetch(environmentId, "uid", "sid",
+                () -> {
+                    requests.incrementAndGet();
+                    return response;
+                });
+        CompletableFuture<JsonArray> second = inFlightAllocations.fetch(environmentId, "uid", "sid",
+                () -> {
+                    requests.incrementAndGet();
+                    return response;
+                });
+
+        Assert.assertEquals(1, requests.get());
+        Assert.assertSame(first, second);
+        Assert.assertFalse(first.isDone());
+
+        JsonArray allocations = new JsonArray();
+        response.complete(allocations);
+        Assert.assertSame(allocations, first.join());
+        Assert.assertEquals(0, inFlightAllocations.size());
+    }
+
+    @Test
+    public void testDifferentParticipantsDoNotShareRequests() {
+        InFlightAllocations inFlightAllocations = new InFlightAllocations();
+        AtomicInteger requests = new AtomicInteger();
+
+        inFlightAllocations.fetch(environmentId, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        inFlightAllocations.fetch(environmentId, "uid", "other_sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        inFlightAllocations.fetch("other_environment", "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(3, inFlightAllocations.size());
+    }
+
+    @Test
+    public void testCompletedRequestIsNotReused() {
+        InFlightAllocations inFlightAllocations = new InFlightAllocations();
+        AtomicInteger requests = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            inFlightAllocations.fetch(environmentId, "uid", "sid", () -> {
+                requests.incrementAndGet();
+                return CompletableFuture.completedFuture(new JsonArray());
+            });
+        }
+
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(0, inFlightAllocations.size());
+    }
+
+    @Test
+    public void testFailedRequestIsShared() {
+        InFlightAllocations inFlightAllocations = new InFlightAllocations();
+        CompletableFuture<JsonArray> response = new CompletableFuture<>();
+
+        CompletableFuture<JsonArray> first = inFlightAllocations.fetch(environmentId, "uid", "sid",
+                () -> response);
+        CompletableFuture<JsonArray> second = inFlightAllocations.fetch(environmentId, "uid", "sid",
+                () -> response);
+        response.completeExceptionally(new RuntimeException("test"));
+
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertTrue(second.isCompletedExceptionally());
+        Assert.assertEquals(0, inFlightAllocations.size());
+    }
+}
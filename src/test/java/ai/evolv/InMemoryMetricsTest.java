@@ -0,0 +1,95 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InMemoryMetricsTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    @Test
+    public void testHistogram() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            metrics.record(AscendMetrics.Timer.GET, nanos);
+        }
+
+        InMemoryMetrics.Histogram histogram = metrics.getHistogram(AscendMetrics.Timer.GET);
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getTotalNanos());
+        Assert.assertEquals(1000, histogram.getMaxNanos());
+        Assert.assertEquals(500.5, histogram.getMeanNanos(), 0);
+        long median = histogram.getPercentileNanos(50);
+        Assert.assertTrue(median >= 500 && median < 1000);
+        Assert.assertEquals(1000, histogram.getPercentileNanos(100));
+        Assert.assertEquals(0, metrics.getHistogram(AscendMetrics.Timer.STORE_GET)
+                .getPercentileNanos(99));
+    }
+
+    @Test
+    public void testCounters() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.increment(AscendMetrics.Counter.CACHE_HIT);
+        metrics.increment(AscendMetrics.Counter.CACHE_HIT);
+
+        Assert.assertEquals(2, metrics.getCount(AscendMetrics.Counter.CACHE_HIT));
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.CACHE_MISS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new InMemoryMetrics().getHistogram(AscendMetrics.Timer.GET).getPercentileNanos(101);
+    }
+
+    @Test
+    public void testClientIsInstrumented() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        HttpClient httpClient = url -> CompletableFuture.completedFuture(
+                url.contains("/allocations") ? rawAllocation : "");
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setAllocationFreshness(1, TimeUnit.HOURS)
+                .setMetrics(metrics)
+                .build();
+        AscendParticipant participant = AscendParticipant.builder().build();
+
+        AscendClient client = AscendClientFactory.init(config, participant);
+        Assert.assertEquals(2.5, client.get("search.weighting.distance", 0.0), 0);
+        client.confirm();
+        AscendClientFactory.init(config, participant);
+
+        Assert.assertEquals(1, metrics.getHistogram(AscendMetrics.Timer.ALLOCATION_FETCH)
+                .getCount());
+        Assert.assertEquals(1, metrics.getHistogram(AscendMetrics.Timer.GET).getCount());
+        Assert.assertTrue(metrics.getHistogram(AscendMetrics.Timer.AUDIENCE_EVALUATION)
+                .getCount() > 0);
+        Assert.assertTrue(metrics.getHistogram(AscendMetrics.Timer.STORE_GET).getCount() > 0);
+        Assert.assertTrue(metrics.getHistogram(AscendMetrics.Timer.STORE_PUT).getCount() > 0);
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.CACHE_MISS));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.CACHE_HIT));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.EVENT_SENT));
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.FETCH_FAILURE));
+    }
+
+    @Test
+    public void testFailedFetchIsCounted() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        HttpClient httpClient = url -> {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            response.completeExceptionally(new IllegalStateException("unavailable"));
+            return response;
+        };
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setMetrics(metrics)
+                .build();
+
+        AscendClient client = AscendClientFactory.init(config, AscendParticipant.builder().build());
+
+        Assert.assertEquals(1.0, client.get("search.weighting.distance", 1.0), 0);
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.FETCH_FAILURE));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.FALLBACK));
+    }
+}
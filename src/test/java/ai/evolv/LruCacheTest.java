@@ -5,6 +5,13 @@ import com.google.gson.JsonParser;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 public class LruCacheTest {
 
     private final String rawAllocation = "[{\"uid\":\"test_key\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
@@ -14,11 +21,10 @@ public class LruCacheTest {
         int testCacheSize = 10;
         String testKey = "test_key";
 
-        LruCache cache = new LruCache(testCacheSize);
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
         JsonArray entry = cache.getEntry(testKey);
 
-        Assert.assertNotNull(entry);
-        Assert.assertEquals(0, entry.size());
+        Assert.assertNull(entry);
     }
 
     @Test
@@ -27,7 +33,7 @@ public class LruCacheTest {
         String testKey = "test_key";
         JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
 
-        LruCache cache = new LruCache(testCacheSize);
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
         cache.putEntry(testKey, testEntry);
         JsonArray entry = cache.getEntry(testKey);
 
@@ -45,7 +51,7 @@ public class LruCacheTest {
         String keyFour = "key_four";
         JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
 
-        LruCache cache = new LruCache(testCacheSize);
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
 
         cache.putEntry(keyOne, testEntry);
         cache.putEntry(keyTwo, testEntry);
@@ -64,7 +70,7 @@ public class LruCacheTest {
         Assert.assertEquals(testEntry, entryTwo);
         Assert.assertEquals(testEntry, entryThree);
         Assert.assertEquals(testEntry, entryFour);
-        Assert.assertEquals(0, evictedEntry.size());
+        Assert.assertNull(evictedEntry);
     }
 
     @Test
@@ -73,7 +79,7 @@ public class LruCacheTest {
         String testKey = "test_key";
         JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
 
-        LruCache cache = new LruCache(testCacheSize);
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
         cache.putEntry(testKey, testEntry);
         cache.putEntry(testKey, testEntry);
         JsonArray entry = cache.getEntry(testKey);
@@ -82,4 +88,67 @@ public class LruCacheTest {
         Assert.assertNotEquals(0, entry.size());
         Assert.assertEquals(testEntry, entry);
     }
+
+    @Test
+    public void testGetEntryRefreshesRecency() {
+        JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
+
+        LruCache<JsonArray> cache = new LruCache<>(2);
+        cache.putEntry("key_one", testEntry);
+        cache.putEntry("key_two", testEntry);
+        cache.getEntry("key_one");
+        cache.putEntry("key_three", testEntry);
+
+        Assert.assertEquals(testEntry, cache.getEntry("key_one"));
+        Assert.assertNull(cache.getEntry("key_two"));
+        Assert.assertEquals(testEntry, cache.getEntry("key_three"));
+    }
+
+    @Test
+    public void testSegmentedCacheKeepsSizeLimit() {
+        int testCacheSize = 1000;
+        JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
+
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
+        for (int i = 0; i < testCacheSize * 5; i++) {
+            cache.putEntry("key_" + i, testEntry);
+        }
+
+        Assert.assertEquals(testCacheSize, cache.size());
+        Assert.assertEquals(testEntry, cache.getEntry("key_" + (testCacheSize * 5 - 1)));
+        Assert.assertNull(cache.getEntry("key_0"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        int testCacheSize = 100;
+        int threads = 8;
+        JsonArray testEntry = new JsonParser().parse(rawAllocation).getAsJsonArray();
+
+        LruCache<JsonArray> cache = new LruCache<>(testCacheSize);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        String key = "key_" + ((thread * 31 + i) % 500);
+                        cache.putEntry(key, testEntry);
+                        // the entry may already have been evicted by another thread
+                        JsonArray entry = cache.getEntry(key);
+                        Assert.assertTrue(entry == null || entry == testEntry);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(testCacheSize, cache.size());
+    }
 }
@@ -0,0 +1,99 @@
+package ai.evolv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParticipantFlagsTest {
+
+    @Test
+    public void testMarkSetsFlagOnce() {
+        ParticipantFlags flags = new ParticipantFlags();
+
+        Assert.assertFalse(flags.isSet("test_eid", ParticipantFlags.TOUCHED));
+        Assert.assertTrue(flags.mark("test_eid", ParticipantFlags.TOUCHED, 0));
+        Assert.assertFalse(flags.mark("test_eid", ParticipantFlags.TOUCHED, 0));
+        Assert.assertTrue(flags.isSet("test_eid", ParticipantFlags.TOUCHED));
+        Assert.assertFalse(flags.isSet("other_eid", ParticipantFlags.TOUCHED));
+    }
+
+    @Test
+    public void testExcludingFlagPreventsMark() {
+        ParticipantFlags flags = new ParticipantFlags();
+        flags.mark("test_eid", ParticipantFlags.CONFIRMED, ParticipantFlags.CONTAMINATED);
+
+        Assert.assertFalse(flags.mark("test_eid", ParticipantFlags.CONTAMINATED,
+                ParticipantFlags.CONFIRMED));
+        Assert.assertFalse(flags.isSet("test_eid", ParticipantFlags.CONTAMINATED));
+    }
+
+    @Test
+    public void testMergeKeepsFlagsAlreadySet() {
+        ParticipantFlags flags = new ParticipantFlags();
+        flags.mark("test_eid", ParticipantFlags.TOUCHED, 0);
+
+        flags.merge("test_eid", ParticipantFlags.CONFIRMED);
+        flags.merge("test_eid", 0);
+
+        Assert.assertTrue(flags.isSet("test_eid", ParticipantFlags.TOUCHED));
+        Assert.assertTrue(flags.isSet("test_eid", ParticipantFlags.CONFIRMED));
+        Assert.assertFalse(flags.mark("test_eid", ParticipantFlags.CONFIRMED, 0));
+    }
+
+    @Test
+    public void testConcurrentMarksSetFlagOnce() throws Exception {
+        ParticipantFlags flags = new ParticipantFlags();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> marks = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int flag = i % 2 == 0 ? ParticipantFlags.CONFIRMED : ParticipantFlags.CONTAMINATED;
+                int excluding = ParticipantFlags.CONFIRMED | ParticipantFlags.CONTAMINATED;
+                marks.add(executor.submit(() -> flags.mark("test_eid", flag, excluding)));
+            }
+
+            int marked = 0;
+            for (Future<Boolean> mark : marks) {
+                if (mark.get(5, TimeUnit.SECONDS)) {
+                    marked++;
+                }
+            }
+            Assert.assertEquals(1, marked);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRegistrySharesFlagsWhileTheyAreReferenced() {
+        ParticipantFlags.Registry registry = new ParticipantFlags.Registry();
+        List<ParticipantFlags> referenced = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            referenced.add(registry.get("test_uid_" + i));
+        }
+
+        for (int i = 0; i < referenced.size(); i++) {
+            Assert.assertSame(referenced.get(i), registry.get("test_uid_" + i));
+        }
+        Assert.assertNotSame(referenced.get(0), referenced.get(1));
+    }
+
+    @Test
+    public void testRegistryKeepsConfirmationsOfEarlierClients() {
+        ParticipantFlags.Registry registry = new ParticipantFlags.Registry();
+        ParticipantFlags earlierClient = registry.get("test_uid");
+        for (int i = 0; i < 5000; i++) {
+            registry.get("other_uid_" + i);
+        }
+
+        Assert.assertTrue(earlierClient.mark("test_eid", ParticipantFlags.CONFIRMED, 0));
+        Assert.assertFalse(registry.get("test_uid").mark("test_eid",
+                ParticipantFlags.CONFIRMED, 0));
+    }
+}
@@ -0,0 +1,44 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SemanticVersionTest {
+
+    private int compare(String one, String two) {
+        return Integer.signum(SemanticVersion.parse(one).compareTo(SemanticVersion.parse(two)));
+    }
+
+    @Test
+    public void testCompareReleases() {
+        Assert.assertEquals(0, compare("1.2.3", "1.2.3"));
+        Assert.assertEquals(0, compare("1.2", "1.2.0"));
+        Assert.assertEquals(0, compare("v1.2.3", "1.2.3"));
+        Assert.assertEquals(-1, compare("1.9.0", "1.10.0"));
+        Assert.assertEquals(1, compare("2.0.0", "1.99.99"));
+    }
+
+    @Test
+    public void testComparePreReleases() {
+        Assert.assertEquals(-1, compare("1.0.0-alpha", "1.0.0"));
+        Assert.assertEquals(-1, compare("1.0.0-alpha", "1.0.0-alpha.1"));
+        Assert.assertEquals(-1, compare("1.0.0-alpha.1", "1.0.0-alpha.beta"));
+        Assert.assertEquals(-1, compare("1.0.0-beta.2", "1.0.0-beta.11"));
+        Assert.assertEquals(-1, compare("1.0.0-beta.11", "1.0.0-rc.1"));
+    }
+
+    @Test
+    public void testBuildMetadataIsIgnored() {
+        Assert.assertEquals(0, compare("1.0.0+20190101", "1.0.0+20200101"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsMalformedVersion() {
+        SemanticVersion.parse("1..2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsNonNumericComponent() {
+        SemanticVersion.parse("1.x.2");
+    }
+}
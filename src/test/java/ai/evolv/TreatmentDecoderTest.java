@@ -0,0 +1,91 @@
+package ai.evolv;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class TreatmentDecoderTest {
+
+    @Test
+    public void testDecodeString() {
+        Assert.assertEquals("white", TreatmentDecoder.decode(new JsonPrimitive("white"),
+                String.class));
+        Assert.assertEquals("2.5", TreatmentDecoder.decode(new JsonPrimitive(2.5), String.class));
+    }
+
+    @Test
+    public void testDecodeBoolean() {
+        Assert.assertEquals(true, TreatmentDecoder.decode(new JsonPrimitive(true), Boolean.class));
+        Assert.assertEquals(false, TreatmentDecoder.decode(new JsonPrimitive("false"),
+                boolean.class));
+    }
+
+    @Test
+    public void testDecodeInteger() {
+        Assert.assertEquals(Integer.valueOf(3), TreatmentDecoder.decode(new JsonPrimitive(3),
+                Integer.class));
+        Assert.assertEquals(Integer.valueOf(3), TreatmentDecoder.decode(new JsonPrimitive("3"),
+                int.class));
+    }
+
+    @Test
+    public void testDecodeIntegralDouble() {
+        Assert.assertEquals(Integer.valueOf(3), TreatmentDecoder.decode(new JsonPrimitive(3.0),
+                Integer.class));
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testDecodeFractionAsInteger() {
+        TreatmentDecoder.decode(new JsonPrimitive(2.5), Integer.class);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testDecodeOverflowingInteger() {
+        TreatmentDecoder.decode(new JsonParser().parse("4294967296"), int.class);
+    }
+
+    @Test
+    public void testDecodeDouble() {
+        Assert.assertEquals(2.5, TreatmentDecoder.decode(new JsonPrimitive(2.5), Double.class),
+                0);
+        Assert.assertEquals(2.5, TreatmentDecoder.decode(new JsonPrimitive(2.5), double.class),
+                0);
+    }
+
+    @Test
+    public void testDecodeThroughAdapter() {
+        JsonElement element = new JsonParser().parse("{\"header\":\"white\",\"megatron\":\"none\"}");
+        Map map = TreatmentDecoder.decode(element, Map.class);
+        Assert.assertEquals("white", map.get("header"));
+
+        List list = TreatmentDecoder.decode(new JsonParser().parse("[\"blue\",\"white\"]"),
+                List.class);
+        Assert.assertEquals(2, list.size());
+
+        Assert.assertEquals(Long.valueOf(7), TreatmentDecoder.decode(new JsonPrimitive(7),
+                Long.class));
+    }
+
+    @Test
+    public void testDecodeNull() {
+        Assert.assertNull(TreatmentDecoder.decode(JsonNull.INSTANCE, String.class));
+        Assert.assertNull(TreatmentDecoder.decode(JsonNull.INSTANCE, Double.class));
+    }
+
+    @Test
+    public void testIsImmutable() {
+        Assert.assertTrue(TreatmentDecoder.isImmutable(String.class));
+        Assert.assertTrue(TreatmentDecoder.isImmutable(Double.class));
+        Assert.assertTrue(TreatmentDecoder.isImmutable(double.class));
+        Assert.assertFalse(TreatmentDecoder.isImmutable(Map.class));
+        Assert.assertFalse(TreatmentDecoder.isImmutable(List.class));
+    }
+}
@@ -0,0 +1,168 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class WriteBehindAllocationStoreTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+
+    private JsonArray allocations() {
+        return new AllocationsTest().parseRawAllocations(rawAllocation);
+    }
+
+    private static void awaitPendingWrites(WriteBehindAllocationStore store)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testRepeatedPutsAreCoalesced() {
+        AscendAllocationStore delegate = spy(new DefaultAllocationStore(10));
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 1,
+                TimeUnit.HOURS);
+
+        JsonArray latest = null;
+        for (int i = 0; i < 100; i++) {
+            latest = allocations();
+            latest.get(0).getAsJsonObject().addProperty("version", i);
+            store.put("test_user", latest);
+        }
+
+        Assert.assertEquals(latest, store.get("test_user"));
+        verify(delegate, never()).put(any(), any());
+
+        store.close();
+        verify(delegate, times(1)).put("test_user", latest);
+        Assert.assertEquals(latest, delegate.get("test_user"));
+    }
+
+    @Test
+    public void testFullBatchIsWritten() throws InterruptedException {
+        AscendAllocationStore delegate = new DefaultAllocationStore(10);
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 3, 1,
+                TimeUnit.HOURS);
+
+        store.put("user_1", allocations());
+        store.put("user_2", allocations());
+        store.put("user_3", allocations());
+        awaitPendingWrites(store);
+
+        Assert.assertEquals(allocations(), delegate.get("user_1"));
+        Assert.assertEquals(allocations(), delegate.get("user_3"));
+        store.close();
+    }
+
+    @Test
+    public void testStaleAllocationsAreWritten() throws InterruptedException {
+        AscendAllocationStore delegate = new DefaultAllocationStore(10);
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 20,
+                TimeUnit.MILLISECONDS);
+
+        store.put("test_user", allocations());
+        awaitPendingWrites(store);
+
+        Assert.assertEquals(allocations(), delegate.get("test_user"));
+        store.close();
+    }
+
+    @Test
+    public void testPutAfterCloseIsWrittenThrough() {
+        AscendAllocationStore delegate = new DefaultAllocationStore(10);
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 1,
+                TimeUnit.HOURS);
+        Assert.assertTrue(store.shutdown(1, TimeUnit.SECONDS));
+
+        store.put("test_user", allocations());
+        Assert.assertEquals(0, store.getPendingCount());
+        Assert.assertEquals(allocations(), delegate.get("test_user"));
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        AscendAllocationStore delegate = spy(new DefaultAllocationStore(10));
+        doThrow(new IllegalStateException("unavailable")).doCallRealMethod()
+                .when(delegate).put(any(), any());
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 1,
+                TimeUnit.HOURS);
+
+        store.put("test_user", allocations());
+        Assert.assertFalse(store.flush());
+        Assert.assertEquals(1, store.getPendingCount());
+
+        Assert.assertTrue(store.flush());
+        Assert.assertEquals(0, store.getPendingCount());
+        Assert.assertEquals(allocations(), delegate.get("test_user"));
+        store.close();
+    }
+
+    @Test
+    public void testPutFlagSetsTheFlagOfPendingAllocations() {
+        AscendAllocationStore delegate = spy(new DefaultAllocationStore(10));
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 1,
+                TimeUnit.HOURS);
+        JsonArray allocations = allocations();
+        store.put("test_user", allocations);
+
+        store.putFlag("test_user", "test_eid", "confirmed");
+
+        Assert.assertTrue(store.get("test_user").get(0).getAsJsonObject().get("confirmed")
+                .getAsBoolean());
+        Assert.assertFalse(allocations.get(0).getAsJsonObject().has("confirmed"));
+        verify(delegate, never()).putFlag(any(), any(), any());
+
+        store.close();
+        Assert.assertTrue(delegate.get("test_user").get(0).getAsJsonObject().get("confirmed")
+                .getAsBoolean());
+    }
+
+    @Test
+    public void testPendingFlagsAreSetOnceWhenRead() {
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(
+                new DefaultAllocationStore(10), 100, 1, TimeUnit.HOURS);
+        JsonArray allocations = allocations();
+        store.put("test_user", allocations);
+
+        store.putFlag("test_user", "test_eid", "touched");
+        store.putFlag("test_user", "test_eid", "confirmed");
+        store.putFlag("test_user", "test_eid", "confirmed");
+
+        JsonArray flagged = store.get("test_user");
+        Assert.assertSame(flagged, store.get("test_user"));
+        Assert.assertTrue(flagged.get(0).getAsJsonObject().get("touched").getAsBoolean());
+        Assert.assertTrue(flagged.get(0).getAsJsonObject().get("confirmed").getAsBoolean());
+        Assert.assertFalse(allocations.get(0).getAsJsonObject().has("touched"));
+        store.close();
+    }
+
+    @Test
+    public void testPutFlagWithoutPendingAllocationsIsPassedOn() {
+        AscendAllocationStore delegate = spy(new DefaultAllocationStore(10));
+        WriteBehindAllocationStore store = new WriteBehindAllocationStore(delegate, 100, 1,
+                TimeUnit.HOURS);
+        store.put("test_user", allocations());
+        Assert.assertTrue(store.flush());
+
+        store.putFlag("test_user", "test_eid", "confirmed");
+
+        verify(delegate, times(1)).putFlag("test_user", "test_eid", "confirmed");
+        verify(delegate, times(1)).put(any(), any());
+        Assert.assertTrue(store.get("test_user").get(0).getAsJsonObject().get("confirmed")
+                .getAsBoolean());
+        store.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        new WriteBehindAllocationStore(new DefaultAllocationStore(10), 0, 1, TimeUnit.SECONDS);
+    }
+}